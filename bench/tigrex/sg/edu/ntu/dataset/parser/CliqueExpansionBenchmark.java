@@ -0,0 +1,50 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Clique expansion of yearly groups, the core of
+ * {@link DblpPreprocessor#generateTEG()} and {@link ImdbPreprocessor#readRaw(String)}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CliqueExpansionBenchmark {
+	
+	@Param({"1", "4"})
+	public int parallelism;
+	
+	@Param({"100"})
+	public int maxGroupSize;
+	
+	private Map<Integer, List<int[]>> groups;
+	
+	@Setup
+	public void setup() {
+		this.groups = SyntheticData.cliques(20, 50000, 200000, this.maxGroupSize, 0);
+	}
+	
+	@Benchmark
+	public Map<Integer, SnapshotGraph> expand() {
+		return new CliqueExpander(this.parallelism).expand(this.groups);
+	}
+
+}
@@ -0,0 +1,116 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The stages of {@link PreprocessorForInsertedDeletions}: building the
+ * condensed graph, generating end times and writing the edges, and the
+ * streaming generator that replaces all three for sorted inputs.
+ * 
+ * Every stage gets its input from a state built outside the measurement,
+ * and only the generation is run with each parallelism.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DeletionsBenchmark {
+	
+	private static final int NUM_VERTICES = 200000;
+	private static final int DEGREE = 10;
+	private static final int NUM_SNAPSHOTS = 100;
+	
+	@Param({".sim", ".sim.bin"})
+	public String suffix;
+	
+	private File directory;
+	private String path;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		this.directory = SyntheticData.createDirectory();
+		this.path = new File(this.directory, "teg" + this.suffix).getPath();
+		SyntheticData.writeNormalizedTeg(this.path, NUM_VERTICES, DEGREE, NUM_SNAPSHOTS, 0);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		SyntheticData.delete(this.directory);
+	}
+	
+	/**
+	 * A condensed graph without end times, for generateDeletions.
+	 */
+	@State(Scope.Benchmark)
+	public static class Graph {
+		
+		@Param({"1", "4"})
+		public int parallelism;
+		
+		private PreprocessorForInsertedDeletions preprocessor;
+		
+		@Setup(Level.Iteration)
+		public void setup(DeletionsBenchmark input) {
+			this.preprocessor = new PreprocessorForInsertedDeletions();
+			this.preprocessor.setParallelism(this.parallelism);
+			this.preprocessor.constructGraph(input.path);
+		}
+	}
+	
+	/**
+	 * A condensed graph with its end times generated, for writeEdgesToFile.
+	 */
+	@State(Scope.Benchmark)
+	public static class Deletions {
+		
+		private PreprocessorForInsertedDeletions preprocessor;
+		
+		@Setup(Level.Iteration)
+		public void setup(DeletionsBenchmark input) {
+			this.preprocessor = new PreprocessorForInsertedDeletions();
+			this.preprocessor.constructGraph(input.path);
+			this.preprocessor.generateDeletions(0);
+		}
+	}
+	
+	@Benchmark
+	public void constructGraph() {
+		new PreprocessorForInsertedDeletions().constructGraph(this.path);
+	}
+	
+	@Benchmark
+	public void generateDeletions(Graph graph) {
+		graph.preprocessor.generateDeletions(0);
+	}
+	
+	@Benchmark
+	public void writeEdgesToFile(Deletions deletions) {
+		deletions.preprocessor.writeEdgesToFile(this.path + ".deletions" + this.suffix);
+	}
+	
+	@Benchmark
+	public long streamingDeletions() throws IOException {
+		return new StreamingDeletionGenerator(DeletionModel.uniform(), 0).generate(this.path, this.path + ".deletions" + this.suffix);
+	}
+
+}
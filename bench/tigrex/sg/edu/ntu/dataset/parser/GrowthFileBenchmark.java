@@ -0,0 +1,73 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Growth file conversion as done by {@link YoutubePreprocessor} and
+ * {@link WikiPreprocessor}, to text or binary output.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GrowthFileBenchmark {
+	
+	private static final int NUM_EDGES = 1000000;
+	
+	@Param({"youtube", "wiki"})
+	public String format;
+	
+	@Param({".teg", ".teg.bin"})
+	public String suffix;
+	
+	@Param({"1", "4"})
+	public int parallelism;
+	
+	private File directory;
+	private String path;
+	private GrowthFileConverter converter;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		this.directory = SyntheticData.createDirectory();
+		this.path = new File(this.directory, this.format + "-growth.txt").getPath();
+		
+		if (this.format.equals("youtube")) {
+			SyntheticData.writeGrowthFile(this.path, NUM_EDGES, NUM_EDGES / 3, 3, 0);
+			this.converter = new GrowthFileConverter(3, true, false);
+		} else {
+			SyntheticData.writeGrowthFile(this.path, NUM_EDGES, NUM_EDGES / 5, 4, 0);
+			this.converter = new GrowthFileConverter(4, false, true);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		SyntheticData.delete(this.directory);
+	}
+	
+	@Benchmark
+	public void convert() throws IOException {
+		this.converter.convert(this.path, this.path + this.suffix, this.parallelism);
+	}
+
+}
@@ -0,0 +1,64 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link NormalizedTegWriter} with its renumbering and mapping files, on the
+ * clique expansion of synthetic publications.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NormalizedTegWriterBenchmark {
+	
+	@Param({".teg", ".teg.bin"})
+	public String suffix;
+	
+	private File directory;
+	
+	private Map<Integer, SnapshotGraph> snapshots;
+	private VertexDictionary dictionary;
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		this.directory = SyntheticData.createDirectory();
+		
+		this.snapshots = new CliqueExpander().expand(SyntheticData.cliques(10, 20000, 100000, 20, 0));
+		this.dictionary = new VertexDictionary();
+		for (int v = 0; v < 100000; v++) {
+			this.dictionary.getOrAdd("Vertex " + v);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		SyntheticData.delete(this.directory);
+	}
+	
+	@Benchmark
+	public void write() throws IOException {
+		new NormalizedTegWriter().write(this.snapshots, this.dictionary, new File(this.directory, "normalized" + this.suffix).getPath());
+	}
+
+}
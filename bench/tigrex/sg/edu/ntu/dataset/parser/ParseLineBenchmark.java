@@ -0,0 +1,78 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * IMDb CSV parsing: {@link ImdbPreprocessor#parseLine(String)} per line
+ * against streaming the whole file through {@link CsvTokenizer}.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParseLineBenchmark {
+	
+	private static final int NUM_MOVIES = 20000;
+	
+	private String text;
+	private String[] lines;
+	
+	private final ImdbPreprocessor preprocessor = new ImdbPreprocessor();
+	
+	@Setup
+	public void setup() throws IOException {
+		
+		File directory = SyntheticData.createDirectory();
+		String path = new File(directory, "imdb.csv").getPath();
+		SyntheticData.writeImdbCsv(path, NUM_MOVIES, NUM_MOVIES / 2, 0);
+		
+		this.text = new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8);
+		this.lines = this.text.split(System.lineSeparator());
+		
+		SyntheticData.delete(directory);
+	}
+	
+	@Benchmark
+	public void parseLine(Blackhole blackhole) {
+		for (String line: this.lines) {
+			blackhole.consume(this.preprocessor.parseLine(line));
+		}
+	}
+	
+	@Benchmark
+	public void tokenizeActorsAndYear(Blackhole blackhole) throws IOException {
+		
+		CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(this.text));
+		List<String> names = new ArrayList<String>();
+		
+		while (tokenizer.next()) {
+			names.clear();
+			tokenizer.split(5, ',', names);
+			blackhole.consume(names);
+			blackhole.consume(tokenizer.getNumFields() > 6 && !tokenizer.equals(6, "Year") ? tokenizer.getInt(6) : 0);
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates deterministic inputs shaped like the real dumps, so benchmarks
+ * do not need them.
+ *
+ */
+public class SyntheticData {
+	
+	private static final String[] GENRES = {"Action", "Adventure", "Drama", "Comedy", "Sci-Fi"};
+	
+	/**
+	 * Writes a 12-column Kaggle IMDb CSV with quoted, comma-separated casts
+	 * and descriptions containing escaped quotes.
+	 */
+	public static void writeImdbCsv(String path, int numMovies, int numActors, long seed) throws IOException {
+		
+		SplittableRandom rand = new SplittableRandom(seed);
+		
+		try (BufferedWriter writer = open(path)) {
+			
+			writer.write("Rank,Title,Genre,Description,Director,Actors,Year,Runtime (Minutes),Rating,Votes,Revenue (Millions),Metascore");
+			writer.newLine();
+			
+			for (int m = 0; m < numMovies; m++) {
+				
+				StringBuilder actors = new StringBuilder();
+				int castSize = 2 + rand.nextInt(4);
+				for (int a = 0; a < castSize; a++) {
+					if (a > 0) {
+						actors.append(", ");
+					}
+					actors.append("Actor ").append(rand.nextInt(numActors));
+				}
+				
+				writer.write((m + 1) + ",Movie " + m + ",\"" + GENRES[rand.nextInt(GENRES.length)] + "," + GENRES[rand.nextInt(GENRES.length)]
+						+ "\",\"A \"\"synthetic\"\" plot, number " + m + ".\",Director " + rand.nextInt(numMovies / 4 + 1)
+						+ ",\"" + actors + "\"," + (2006 + rand.nextInt(11)) + "," + (80 + rand.nextInt(100))
+						+ "," + (rand.nextInt(90) / 10.0 + 1) + "," + rand.nextInt(1000000) + ",," + rand.nextInt(100));
+				writer.newLine();
+			}
+		}
+	}
+	
+	/**
+	 * Writes a growth file with sparse vertex ids and ascending dates:
+	 * "source target yyyy-mm-dd" for 3 fields, with a trailing sign column for 4.
+	 */
+	public static void writeGrowthFile(String path, int numEdges, int numVertices, int numFields, long seed) throws IOException {
+		
+		SplittableRandom rand = new SplittableRandom(seed);
+		
+		try (BufferedWriter writer = open(path)) {
+			
+			if (numFields == 4) {
+				writer.write("% synthetic growth file");
+				writer.newLine();
+			}
+			
+			for (int e = 0; e < numEdges; e++) {
+				
+				int source = rand.nextInt(numVertices) * 7 + 10;
+				int target = rand.nextInt(numVertices) * 7 + 10;
+				
+				// About a thousand edges per day, starting in 2006
+				int day = e / 1000;
+				int year = 2006 + day / 336;
+				int month = day % 336 / 28 + 1;
+				int dayOfMonth = day % 28 + 1;
+				
+				writer.write(source + "\t" + target + "\t" + year + "-" + (month < 10 ? "0" : "") + month + "-" + (dayOfMonth < 10 ? "0" : "") + dayOfMonth);
+				if (numFields == 4) {
+					writer.write("\t1");
+				}
+				writer.newLine();
+			}
+		}
+	}
+	
+	/**
+	 * Writes a normalized 3-column TEG in which every vertex and snapshot
+	 * appears and no (source, target) pair repeats, as the deletions stage requires.
+	 */
+	public static void writeNormalizedTeg(String path, int numVertices, int degree, int numSnapshots, long seed) throws IOException {
+		
+		SplittableRandom rand = new SplittableRandom(seed);
+		long edge = 0;
+		
+		try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(path, 3)) {
+			for (int source = 0; source < numVertices; source++) {
+				for (int j = 0; j < Math.min(degree, numVertices - 1); j++) {
+					int target = (source + 1 + j) % numVertices;
+					int timestamp = edge < numSnapshots ? (int) edge : rand.nextInt(numSnapshots);
+					writer.write(source, target, timestamp);
+					edge++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return groups per year with a skewed size distribution, as the input of clique expansion
+	 */
+	public static Map<Integer, List<int[]>> cliques(int numYears, int groupsPerYear, int numVertices, int maxGroupSize, long seed) {
+		
+		SplittableRandom rand = new SplittableRandom(seed);
+		Map<Integer, List<int[]>> snapshots = new HashMap<Integer, List<int[]>>();
+		
+		for (int year = 0; year < numYears; year++) {
+			
+			List<int[]> groups = new ArrayList<int[]>(groupsPerYear);
+			for (int g = 0; g < groupsPerYear; g++) {
+				
+				// Mostly small groups with a long tail, like author lists
+				int size = 1 + (int) Math.min(maxGroupSize - 1, -Math.log(1 - rand.nextDouble()) * 3);
+				
+				IntHashSet group = new IntHashSet(size);
+				while (group.size() < size) {
+					group.add(rand.nextInt(numVertices));
+				}
+				groups.add(group.toArray());
+			}
+			
+			snapshots.put(2000 + year, groups);
+		}
+		
+		return snapshots;
+	}
+	
+	private static BufferedWriter open(String path) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "utf-8"));
+	}
+	
+	/**
+	 * @return a fresh scratch directory for generated files
+	 */
+	public static File createDirectory() throws IOException {
+		
+		File directory = File.createTempFile("synthetic", "");
+		directory.delete();
+		directory.mkdirs();
+		
+		return directory;
+	}
+	
+	/**
+	 * Deletes a directory created by {@link #createDirectory()}.
+	 */
+	public static void delete(File directory) {
+		
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file: files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+	
+	public static void main(String[] args) throws IOException {
+		
+		new File("raw").mkdirs();
+		
+		writeImdbCsv("raw/synthetic-imdb.csv", 100000, 50000, 0);
+		writeGrowthFile("raw/synthetic-youtube-growth.txt", 10000000, 3000000, 3, 0);
+		writeGrowthFile("raw/synthetic-wikipedia-growth.txt", 10000000, 2000000, 4, 0);
+		writeNormalizedTeg("raw/synthetic.teg.sim", 1000000, 10, 100, 0);
+		
+	}
+
+}
@@ -0,0 +1,156 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Queries of {@link TemporalGraph} on the ".deletions" output of a synthetic
+ * graph, against a scan of the rows of the {@link CondensedGraph} for the
+ * per-vertex queries.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TemporalGraphBenchmark {
+
+	private static final int NUM_EDGES = 2000000;
+	private static final int NUM_SNAPSHOTS = 100;
+	private static final int NUM_QUERIES = 1024;
+
+	@Param({"10", "1000"})
+	public int degree;
+
+	/**
+	 * Uniform end times keep a third of the edges alive at any time, short
+	 * exponential lifetimes only a few percent.
+	 */
+	@Param({"uniform", "exponential"})
+	public String deletions;
+
+	private File directory;
+	private String path;
+	private TemporalGraph graph;
+
+	private int[] vertices;
+	private int[] timestamps;
+
+	@Setup
+	public void setup() throws IOException {
+
+		this.directory = SyntheticData.createDirectory();
+		String teg = new File(this.directory, "teg.sim.bin").getPath();
+		SyntheticData.writeNormalizedTeg(teg, NUM_EDGES / this.degree, this.degree, NUM_SNAPSHOTS, 0);
+
+		this.path = teg + ".deletions.bin";
+		PreprocessorForInsertedDeletions preprocessor = new PreprocessorForInsertedDeletions();
+		preprocessor.setDeletionModel(this.deletions.equals("uniform") ? DeletionModel.uniform() : DeletionModel.exponential(NUM_SNAPSHOTS / 50.0));
+		preprocessor.process(teg, this.path);
+
+		this.graph = TemporalGraph.read(this.path);
+
+		SplittableRandom rand = new SplittableRandom(0);
+		this.vertices = new int[NUM_QUERIES];
+		this.timestamps = new int[NUM_QUERIES];
+		for (int i = 0; i < NUM_QUERIES; i++) {
+			this.vertices[i] = rand.nextInt(NUM_EDGES / this.degree);
+			this.timestamps[i] = rand.nextInt(NUM_SNAPSHOTS);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		this.graph.close();
+		SyntheticData.delete(this.directory);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public TemporalGraph read() throws IOException {
+		try (TemporalGraph graph = TemporalGraph.read(this.path)) {
+			return graph;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void neighborsAt(Blackhole blackhole) {
+		for (int i = 0; i < NUM_QUERIES; i++) {
+			blackhole.consume(this.graph.getNeighbors(this.vertices[i], this.timestamps[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void neighborsAtByScan(Blackhole blackhole) {
+
+		CondensedGraph condensed = this.graph.getGraph();
+
+		for (int i = 0; i < NUM_QUERIES; i++) {
+
+			int t = this.timestamps[i];
+			long begin = condensed.getBegin(this.vertices[i]);
+			long end = condensed.getEnd(this.vertices[i]);
+
+			int[] neighbors = new int[(int) (end - begin)];
+			int n = 0;
+			for (long e = begin; e < end; e++) {
+				if (condensed.getStartTime(e) <= t && t <= condensed.getEndTime(e)) {
+					neighbors[n++] = condensed.getTarget(e);
+				}
+			}
+			blackhole.consume(n);
+			blackhole.consume(neighbors);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void degreeAt(Blackhole blackhole) {
+		for (int i = 0; i < NUM_QUERIES; i++) {
+			blackhole.consume(this.graph.getDegree(this.vertices[i], this.timestamps[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void neighborsInInterval(Blackhole blackhole) {
+		for (int i = 0; i < NUM_QUERIES; i++) {
+			blackhole.consume(this.graph.getNeighbors(this.vertices[i], this.timestamps[i], this.timestamps[i] + NUM_SNAPSHOTS / 10));
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long edgesInInterval(Blackhole blackhole) {
+		return this.graph.forEachEdge(NUM_SNAPSHOTS / 2, NUM_SNAPSHOTS / 2 + NUM_SNAPSHOTS / 10,
+				(source, target, startTime, endTime) -> blackhole.consume(target));
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long[] degreeDistribution() {
+		return this.graph.getDegreeDistribution(NUM_SNAPSHOTS / 2);
+	}
+
+}
@@ -0,0 +1,70 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The edge writers on their own; see {@link NormalizedTegWriterBenchmark}
+ * for the writer with its renumbering and mapping files.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WriterBenchmark {
+	
+	private static final int NUM_EDGES = 2000000;
+	
+	@Param({".teg", ".teg.bin"})
+	public String suffix;
+	
+	@Param({"3", "4"})
+	public int columns;
+	
+	private File directory;
+	
+	@Setup
+	public void setup() throws IOException {
+		this.directory = SyntheticData.createDirectory();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		SyntheticData.delete(this.directory);
+	}
+	
+	@Benchmark
+	public void write() throws IOException {
+		
+		try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(new File(this.directory, "edges" + this.suffix).getPath(), this.columns)) {
+			for (int i = 0; i < NUM_EDGES; i++) {
+				int source = i >>> 4;
+				int target = i * 31 & 0xFFFFF;
+				int startTime = i & 0x3F;
+				if (this.columns == 3) {
+					writer.write(source, target, startTime);
+				} else {
+					writer.write(source, target, startTime, startTime + (i & 0xF));
+				}
+			}
+		}
+	}
+
+}
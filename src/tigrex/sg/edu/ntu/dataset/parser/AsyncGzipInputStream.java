@@ -0,0 +1,191 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates a gzip stream on its own thread.
+ * 
+ * The producer thread fills fixed-size chunks and hands them to the reader
+ * through a bounded queue, so decompression runs ahead of (and concurrently
+ * with) whatever parses the data, while at most a few chunks are held in memory.
+ *
+ */
+public class AsyncGzipInputStream extends InputStream {
+	
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	private static final int DEFAULT_QUEUE_SIZE = 8;
+	
+	private static class Chunk {
+		final byte[] data;
+		int length;
+		
+		Chunk(int size) {
+			this.data = new byte[size];
+		}
+	}
+	
+	private static final Chunk END = new Chunk(0);
+	
+	private final InputStream source;
+	
+	private final BlockingQueue<Chunk> filled;
+	private final BlockingQueue<Chunk> free;
+	
+	private final Thread producer;
+	
+	private volatile Throwable failure;
+	
+	private Chunk current;
+	private int position;
+	
+	public AsyncGzipInputStream(InputStream compressed) throws IOException {
+		this(compressed, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUE_SIZE);
+	}
+	
+	public AsyncGzipInputStream(InputStream compressed, int chunkSize, int queueSize) throws IOException {
+		
+		this.source = new GZIPInputStream(compressed, 1 << 16);
+		
+		// Room for every chunk and END, so that END can always be added
+		this.filled = new ArrayBlockingQueue<Chunk>(queueSize + 1);
+		this.free = new ArrayBlockingQueue<Chunk>(queueSize + 1);
+		for (int i = 0; i < queueSize; i++) {
+			this.free.add(new Chunk(chunkSize));
+		}
+		
+		this.producer = new Thread(this::inflate, "gzip-inflater");
+		this.producer.setDaemon(true);
+		this.producer.start();
+		
+	}
+	
+	private void inflate() {
+		
+		try {
+			
+			while (true) {
+				Chunk chunk = this.free.take();
+				
+				int length = 0;
+				int read;
+				while (length < chunk.data.length && (read = this.source.read(chunk.data, length, chunk.data.length - length)) != -1) {
+					length += read;
+				}
+				
+				chunk.length = length;
+				if (length > 0) {
+					this.filled.put(chunk);
+				}
+				
+				if (length < chunk.data.length) {
+					break;
+				}
+			}
+			
+		} catch (InterruptedException e) {
+			// Closed by the reader
+		} catch (Throwable e) {
+			this.failure = e;
+		} finally {
+			// Whatever happened, the reader must not wait forever
+			this.filled.offer(END);
+		}
+		
+	}
+	
+	/**
+	 * Makes sure {@code current} has unread bytes.
+	 * 
+	 * @return false at the end of the stream
+	 */
+	private boolean fill() throws IOException {
+		
+		if (this.current == END) {
+			return false;
+		}
+		
+		if (this.current != null && this.position < this.current.length) {
+			return true;
+		}
+		
+		if (this.current != null) {
+			this.free.add(this.current);
+		}
+		
+		try {
+			this.current = this.filled.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for inflated data.");
+		}
+		this.position = 0;
+		
+		if (this.current == END) {
+			if (this.failure instanceof IOException) {
+				throw (IOException) this.failure;
+			} else if (this.failure != null) {
+				throw new IOException("Inflating failed.", this.failure);
+			}
+			return false;
+		}
+		
+		return true;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		
+		if (!this.fill()) {
+			return -1;
+		}
+		
+		return this.current.data[this.position++] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		
+		if (len == 0) {
+			return 0;
+		}
+		
+		if (!this.fill()) {
+			return -1;
+		}
+		
+		int n = Math.min(len, this.current.length - this.position);
+		System.arraycopy(this.current.data, this.position, b, off, n);
+		this.position += n;
+		
+		return n;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		
+		if (this.current == null || this.current == END) {
+			return 0;
+		}
+		
+		return this.current.length - this.position;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		
+		this.producer.interrupt();
+		try {
+			this.producer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		this.source.close();
+	}
+
+}
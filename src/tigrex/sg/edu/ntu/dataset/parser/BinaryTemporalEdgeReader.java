@@ -0,0 +1,160 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads files written by {@link BinaryTemporalEdgeWriter}.
+ *
+ */
+public class BinaryTemporalEdgeReader implements TemporalEdgeReader {
+	
+	private final FileInputStream in;
+	
+	private final int columns;
+	private final int numVertices;
+	private final int numSnapshots;
+	private final long numEdges;
+	
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	
+	private long numRead;
+	
+	private int source;
+	private int target;
+	private int startTime;
+	private int endTime;
+	
+	public BinaryTemporalEdgeReader(String path) throws IOException {
+		
+		this.in = new FileInputStream(path);
+		this.buffer = new byte[1 << 16];
+		
+		this.fill(BinaryTemporalEdgeWriter.HEADER_SIZE);
+		if (this.limit < BinaryTemporalEdgeWriter.HEADER_SIZE) {
+			this.in.close();
+			throw new IOException("Truncated header in " + path + ".");
+		}
+		
+		ByteBuffer header = ByteBuffer.wrap(this.buffer, 0, BinaryTemporalEdgeWriter.HEADER_SIZE);
+		int magic = header.getInt();
+		int version = header.getInt();
+		
+		if (magic != BinaryTemporalEdgeWriter.MAGIC || version != BinaryTemporalEdgeWriter.VERSION) {
+			this.in.close();
+			throw new IOException("Unsupported file " + path + ", version " + version + ".");
+		}
+		
+		this.columns = header.getInt();
+		this.numVertices = header.getInt();
+		this.numSnapshots = header.getInt();
+		this.numEdges = header.getLong();
+		
+		this.position = BinaryTemporalEdgeWriter.HEADER_SIZE;
+	}
+	
+	/**
+	 * Moves the unread bytes to the front of the buffer and reads until at
+	 * least {@code required} bytes are available or the file ends.
+	 */
+	private void fill(int required) throws IOException {
+		
+		int remaining = this.limit - this.position;
+		System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+		this.position = 0;
+		this.limit = remaining;
+		
+		int read;
+		while (this.limit < required && (read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit)) != -1) {
+			this.limit += read;
+		}
+	}
+	
+	private int readVarint() throws IOException {
+		
+		int value = 0;
+		int shift = 0;
+		byte b;
+		
+		do {
+			if (this.position == this.limit) {
+				throw new IOException("Truncated edge " + this.numRead + ".");
+			}
+			b = this.buffer[this.position++];
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		} while (b < 0);
+		
+		return value;
+	}
+	
+	@Override
+	public boolean next() throws IOException {
+		
+		if (this.numRead == this.numEdges) {
+			return false;
+		}
+		
+		if (this.limit - this.position < BinaryTemporalEdgeWriter.MAX_RECORD_SIZE) {
+			this.fill(BinaryTemporalEdgeWriter.MAX_RECORD_SIZE);
+		}
+		
+		this.source += BinaryTemporalEdgeWriter.unzigzag(this.readVarint());
+		this.target = this.readVarint();
+		this.startTime = this.readVarint();
+		this.endTime = this.columns == 4 ? this.startTime + BinaryTemporalEdgeWriter.unzigzag(this.readVarint()) : -1;
+		
+		this.numRead++;
+		
+		return true;
+	}
+	
+	@Override
+	public int getSource() {
+		return this.source;
+	}
+	
+	@Override
+	public int getTarget() {
+		return this.target;
+	}
+	
+	@Override
+	public int getStartTime() {
+		return this.startTime;
+	}
+	
+	@Override
+	public int getEndTime() {
+		return this.endTime;
+	}
+	
+	@Override
+	public int getColumns() {
+		return this.columns;
+	}
+	
+	@Override
+	public long getNumEdges() {
+		return this.numEdges;
+	}
+	
+	@Override
+	public int getNumVertices() {
+		return this.numVertices;
+	}
+	
+	@Override
+	public int getNumSnapshots() {
+		return this.numSnapshots;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.in.close();
+	}
+
+}
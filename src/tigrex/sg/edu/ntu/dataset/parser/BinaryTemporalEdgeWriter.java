@@ -0,0 +1,164 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes temporal edges in the compact binary format.
+ * 
+ * <pre>
+ * header   magic "TEGB"   int
+ *          version        int
+ *          columns        int   3 or 4
+ *          numVertices    int   one past the largest vertex id
+ *          numSnapshots   int   one past the largest timestamp
+ *          numEdges       long
+ * edge     zigzag varint  source - previous source
+ *          varint         target
+ *          varint         start time
+ *          zigzag varint  end time - start time (4 columns only)
+ * </pre>
+ * 
+ * Ints are big-endian; varints are 7 bits per byte, low-order group first.
+ * Sources are delta-encoded, so files sorted by source are the smallest.
+ * The header is written last, when the counts are known.
+ *
+ */
+public class BinaryTemporalEdgeWriter implements TemporalEdgeWriter {
+	
+	static final int MAGIC = 0x54454742;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 28;
+	
+	/**
+	 * Largest encoded size of one edge: four 5-byte varints.
+	 */
+	static final int MAX_RECORD_SIZE = 20;
+	
+	private final FileOutputStream out;
+	private final int columns;
+	
+	private final byte[] buffer;
+	private int position;
+	private long flushed;
+	
+	private int previousSource;
+	private int maxVertex;
+	private int maxTimestamp;
+	private long numEdges;
+	
+	public BinaryTemporalEdgeWriter(String path, int columns) throws IOException {
+		
+		if (columns != 3 && columns != 4) {
+			throw new IllegalArgumentException("Number of columns is " + columns + ", expected 3 or 4.");
+		}
+		
+		this.out = new FileOutputStream(path);
+		this.columns = columns;
+		
+		this.buffer = new byte[1 << 16];
+		this.position = HEADER_SIZE;
+		
+		this.maxVertex = -1;
+		this.maxTimestamp = -1;
+	}
+	
+	@Override
+	public void write(int source, int target, int timestamp) throws IOException {
+		
+		if (this.columns != 3) {
+			throw new IllegalStateException("Writer has " + this.columns + " columns.");
+		}
+		
+		this.writeEdge(source, target, timestamp);
+	}
+	
+	@Override
+	public void write(int source, int target, int startTime, int endTime) throws IOException {
+		
+		if (this.columns != 4) {
+			throw new IllegalStateException("Writer has " + this.columns + " columns.");
+		}
+		
+		this.writeEdge(source, target, startTime);
+		this.writeVarint(zigzag(endTime - startTime));
+		
+		this.maxTimestamp = Math.max(this.maxTimestamp, endTime);
+	}
+	
+	private void writeEdge(int source, int target, int timestamp) throws IOException {
+		
+		if (this.position + MAX_RECORD_SIZE > this.buffer.length) {
+			this.flush();
+		}
+		
+		this.writeVarint(zigzag(source - this.previousSource));
+		this.writeVarint(target);
+		this.writeVarint(timestamp);
+		
+		this.previousSource = source;
+		this.maxVertex = Math.max(this.maxVertex, Math.max(source, target));
+		this.maxTimestamp = Math.max(this.maxTimestamp, timestamp);
+		this.numEdges++;
+	}
+	
+	static int zigzag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+	
+	static int unzigzag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	private void writeVarint(int value) {
+		
+		while ((value & ~0x7f) != 0) {
+			this.buffer[this.position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		this.buffer[this.position++] = (byte) value;
+	}
+	
+	private void flush() throws IOException {
+		this.out.write(this.buffer, 0, this.position);
+		this.flushed += this.position;
+		this.position = 0;
+	}
+	
+	/**
+	 * @return the file offset of the next edge
+	 */
+	long getOffset() {
+		return this.flushed + this.position;
+	}
+	
+	/**
+	 * @return the source the next edge is delta-encoded against
+	 */
+	int getPreviousSource() {
+		return this.previousSource;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		
+		try {
+			this.flush();
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(this.columns);
+			header.putInt(this.maxVertex + 1);
+			header.putInt(this.maxTimestamp + 1);
+			header.putLong(this.numEdges);
+			header.flip();
+			
+			this.out.getChannel().write(header, 0);
+		} finally {
+			this.out.close();
+		}
+	}
+
+}
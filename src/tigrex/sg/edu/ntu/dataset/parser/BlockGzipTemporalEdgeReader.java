@@ -0,0 +1,321 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a file written by {@link BlockGzipTemporalEdgeWriter} through its
+ * block index.
+ *
+ * The blocks ahead of the cursor are inflated on a thread pool while the
+ * current one is parsed, straight from the inflated bytes.
+ * {@link #seek(int)} skips to the first edge of a snapshot in files sorted
+ * by start time.
+ *
+ */
+public class BlockGzipTemporalEdgeReader implements TemporalEdgeReader {
+
+	private final String path;
+	private final FileChannel channel;
+	private final int columns;
+
+	private final long[] offsets;
+	private final int[] compressedLengths;
+	private final int[] lengths;
+	private final int[] minTimes;
+	private final int[] maxTimes;
+	private final long numEdges;
+
+	private final ExecutorService executor;
+	private final ArrayDeque<Future<byte[]>> ahead = new ArrayDeque<Future<byte[]>>();
+	private final int maxAhead;
+	private int nextBlock;
+
+	private byte[] block = new byte[0];
+	private int position;
+
+	private int skipBefore = Integer.MIN_VALUE;
+
+	private int source;
+	private int target;
+	private int startTime;
+	private int endTime;
+
+	public BlockGzipTemporalEdgeReader(String path) throws IOException {
+		this(path, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism the number of blocks inflated at the same time
+	 */
+	public BlockGzipTemporalEdgeReader(String path, int parallelism) throws IOException {
+
+		this.path = path;
+
+		try (DataInputStream index = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(path + BlockGzipTemporalEdgeWriter.INDEX_SUFFIX)))) {
+
+			if (index.readInt() != BlockGzipTemporalEdgeWriter.INDEX_MAGIC || index.readInt() != BlockGzipTemporalEdgeWriter.INDEX_VERSION) {
+				throw new IOException(path + BlockGzipTemporalEdgeWriter.INDEX_SUFFIX + " is not a block index.");
+			}
+
+			this.columns = index.readInt();
+			int numBlocks = index.readInt();
+
+			this.offsets = new long[numBlocks];
+			this.compressedLengths = new int[numBlocks];
+			this.lengths = new int[numBlocks];
+			this.minTimes = new int[numBlocks];
+			this.maxTimes = new int[numBlocks];
+
+			long count = 0;
+			for (int i = 0; i < numBlocks; i++) {
+				this.offsets[i] = index.readLong();
+				this.compressedLengths[i] = index.readInt();
+				this.lengths[i] = index.readInt();
+				count += index.readInt();
+				this.minTimes[i] = index.readInt();
+				this.maxTimes[i] = index.readInt();
+			}
+			this.numEdges = count;
+		}
+
+		this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+		this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "gunzip-block");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.maxAhead = 2 * parallelism;
+	}
+
+	/**
+	 * Moves the cursor to the first edge with a start time of at least the
+	 * given one. Blocks are skipped through the index; the result is only
+	 * meaningful for files sorted by start time.
+	 */
+	public void seek(int timestamp) {
+
+		for (Future<byte[]> future: this.ahead) {
+			future.cancel(false);
+		}
+		this.ahead.clear();
+
+		int first = 0;
+		while (first < this.maxTimes.length && this.maxTimes[first] < timestamp) {
+			first++;
+		}
+
+		this.nextBlock = first;
+		this.block = new byte[0];
+		this.position = 0;
+		this.skipBefore = timestamp;
+	}
+
+	/**
+	 * @return the smallest start time of every block, for callers that plan their own seeks
+	 */
+	public int[] getBlockMinTimes() {
+		return this.minTimes.clone();
+	}
+
+	private boolean nextBlock() throws IOException {
+
+		while (this.ahead.size() < this.maxAhead && this.nextBlock < this.offsets.length) {
+			final int b = this.nextBlock++;
+			this.ahead.add(this.executor.submit(() -> this.inflate(b)));
+		}
+
+		if (this.ahead.isEmpty()) {
+			return false;
+		}
+
+		try {
+			this.block = this.ahead.poll().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading " + this.path + ".", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Cannot inflate a block of " + this.path + ".", e.getCause());
+		}
+
+		this.position = 0;
+
+		return true;
+	}
+
+	private byte[] inflate(int b) throws IOException, DataFormatException {
+
+		ByteBuffer compressed = ByteBuffer.allocate(this.compressedLengths[b]);
+		long offset = this.offsets[b];
+		while (compressed.hasRemaining()) {
+			if (this.channel.read(compressed, offset + compressed.position()) < 0) {
+				throw new IOException("Block " + b + " is truncated.");
+			}
+		}
+
+		byte[] member = compressed.array();
+		for (int i = 0; i < 4; i++) {
+			if (member[i] != BlockGzipTemporalEdgeWriter.GZIP_HEADER[i]) {
+				throw new IOException("Block " + b + " is not a gzip member written by BlockGzipTemporalEdgeWriter.");
+			}
+		}
+
+		int headerSize = BlockGzipTemporalEdgeWriter.GZIP_HEADER.length;
+		int trailerSize = BlockGzipTemporalEdgeWriter.GZIP_TRAILER_SIZE;
+
+		byte[] data = new byte[this.lengths[b]];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, headerSize, member.length - headerSize - trailerSize);
+			int n = 0;
+			while (n < data.length && !inflater.finished()) {
+				int inflated = inflater.inflate(data, n, data.length - n);
+				if (inflated == 0 && inflater.needsInput()) {
+					break;
+				}
+				n += inflated;
+			}
+			if (n != data.length) {
+				throw new IOException("Block " + b + " inflates to " + n + " bytes, expected " + data.length + ".");
+			}
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		int expected = ByteBuffer.wrap(member, member.length - trailerSize, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		if ((int) crc.getValue() != expected) {
+			throw new IOException("CRC mismatch in block " + b + ".");
+		}
+
+		return data;
+	}
+
+	@Override
+	public boolean next() throws IOException {
+
+		do {
+
+			while (this.position >= this.block.length) {
+				if (!this.nextBlock()) {
+					return false;
+				}
+			}
+
+			this.source = this.nextInt(',');
+			this.target = this.nextInt(',');
+			if (this.columns == 4) {
+				this.startTime = this.nextInt(',');
+				this.endTime = this.nextInt('\n');
+			} else {
+				this.startTime = this.nextInt('\n');
+				this.endTime = -1;
+			}
+
+		} while (this.startTime < this.skipBefore);
+
+		// Only the block the seek landed in may start before the timestamp
+		this.skipBefore = Integer.MIN_VALUE;
+
+		return true;
+	}
+
+	private int nextInt(char terminator) throws IOException {
+
+		boolean negative = false;
+		if (this.position < this.block.length && this.block[this.position] == '-') {
+			negative = true;
+			this.position++;
+		}
+
+		long value = 0;
+		int digits = 0;
+
+		while (this.position < this.block.length) {
+			byte c = this.block[this.position++];
+			if (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				digits++;
+			} else if (c == terminator && digits > 0) {
+				return (int) (negative ? -value : value);
+			} else if (c != '\r' || terminator != '\n') {
+				throw new IOException("Malformed edge in " + this.path + ".");
+			}
+		}
+
+		if (terminator == '\n' && digits > 0) {
+			return (int) (negative ? -value : value);
+		}
+
+		throw new IOException("Truncated edge in " + this.path + ".");
+	}
+
+	@Override
+	public int getSource() {
+		return this.source;
+	}
+
+	@Override
+	public int getTarget() {
+		return this.target;
+	}
+
+	@Override
+	public int getStartTime() {
+		return this.startTime;
+	}
+
+	@Override
+	public int getEndTime() {
+		return this.endTime;
+	}
+
+	@Override
+	public int getColumns() {
+		return this.columns;
+	}
+
+	@Override
+	public long getNumEdges() {
+		return this.numEdges;
+	}
+
+	@Override
+	public int getNumVertices() {
+		return -1;
+	}
+
+	@Override
+	public int getNumSnapshots() {
+		return -1;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			this.channel.close();
+		} finally {
+			this.executor.shutdownNow();
+		}
+	}
+
+}
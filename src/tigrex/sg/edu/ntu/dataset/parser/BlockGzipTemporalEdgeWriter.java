@@ -0,0 +1,270 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the text edge format compressed in independent blocks, in the
+ * style of pigz.
+ *
+ * Edges are formatted into blocks of whole lines, and every block is
+ * deflated on a thread pool into its own gzip member. The members are
+ * written in order, so the file is an ordinary multi-member gzip file that
+ * gunzip and {@link java.util.zip.GZIPInputStream} read as one stream.
+ *
+ * Next to it, "path.idx" lists every block:
+ *
+ * <pre>
+ * int magic, int version, int columns, int numBlocks,
+ * numBlocks x (long offset, int compressed length, int uncompressed length,
+ *              int numEdges, int min start time, int max start time)
+ * </pre>
+ *
+ * which lets {@link BlockGzipTemporalEdgeReader} inflate blocks in parallel
+ * and skip to a snapshot.
+ *
+ */
+public class BlockGzipTemporalEdgeWriter implements TemporalEdgeWriter {
+
+	public static final String INDEX_SUFFIX = ".idx";
+
+	static final int INDEX_MAGIC = 0x54454749;
+	static final int INDEX_VERSION = 1;
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	/**
+	 * Header of a gzip member without optional fields: deflate, no flags, no mtime, unknown OS.
+	 */
+	static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+	static final int GZIP_TRAILER_SIZE = 8;
+
+	private static class Block {
+
+		final Future<byte[]> compressed;
+		final int length;
+		final int numEdges;
+		final int minTime;
+		final int maxTime;
+
+		Block(Future<byte[]> compressed, int length, int numEdges, int minTime, int maxTime) {
+			this.compressed = compressed;
+			this.length = length;
+			this.numEdges = numEdges;
+			this.minTime = minTime;
+			this.maxTime = maxTime;
+		}
+	}
+
+	private final String path;
+	private final FileOutputStream out;
+	private final int columns;
+	private final int blockSize;
+	private final int level;
+
+	private final ExecutorService executor;
+	private final ArrayDeque<Block> pending = new ArrayDeque<Block>();
+	private final int maxPending;
+
+	private byte[] buffer;
+	private int position;
+	private int numEdges;
+	private int minTime = Integer.MAX_VALUE;
+	private int maxTime = Integer.MIN_VALUE;
+
+	private long offset;
+	private int numBlocks;
+	private final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+	private final DataOutputStream index = new DataOutputStream(this.indexBytes);
+
+	public BlockGzipTemporalEdgeWriter(String path, int columns) throws IOException {
+		this(path, columns, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param blockSize the uncompressed size of a block
+	 * @param parallelism the number of blocks deflated at the same time
+	 * @param level the {@link Deflater} compression level
+	 */
+	public BlockGzipTemporalEdgeWriter(String path, int columns, int blockSize, int parallelism, int level) throws IOException {
+
+		if (blockSize < TextTemporalEdgeWriter.MAX_LINE_SIZE) {
+			throw new IllegalArgumentException("Block size is " + blockSize + ", expected >= " + TextTemporalEdgeWriter.MAX_LINE_SIZE + ".");
+		}
+
+		this.path = path;
+		this.out = new FileOutputStream(path);
+		this.columns = columns;
+		this.blockSize = blockSize;
+		this.level = level;
+		this.buffer = new byte[blockSize];
+
+		this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "gzip-block");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.maxPending = 2 * parallelism;
+	}
+
+	@Override
+	public void write(int source, int target, int timestamp) throws IOException {
+
+		if (this.columns != 3) {
+			throw new IllegalStateException("Writer has " + this.columns + " columns.");
+		}
+
+		if (this.position + TextTemporalEdgeWriter.MAX_LINE_SIZE > this.buffer.length) {
+			this.submitBlock();
+		}
+
+		this.position = TextTemporalEdgeWriter.format(this.buffer, this.position, source, target, timestamp);
+		this.count(timestamp);
+	}
+
+	@Override
+	public void write(int source, int target, int startTime, int endTime) throws IOException {
+
+		if (this.columns != 4) {
+			throw new IllegalStateException("Writer has " + this.columns + " columns.");
+		}
+
+		if (this.position + TextTemporalEdgeWriter.MAX_LINE_SIZE > this.buffer.length) {
+			this.submitBlock();
+		}
+
+		this.position = TextTemporalEdgeWriter.format(this.buffer, this.position, source, target, startTime, endTime);
+		this.count(startTime);
+	}
+
+	private void count(int startTime) {
+		this.numEdges++;
+		this.minTime = Math.min(this.minTime, startTime);
+		this.maxTime = Math.max(this.maxTime, startTime);
+	}
+
+	private void submitBlock() throws IOException {
+
+		if (this.numEdges == 0) {
+			return;
+		}
+
+		final byte[] data = this.buffer;
+		final int length = this.position;
+		final int level = this.level;
+
+		this.pending.add(new Block(this.executor.submit(() -> compress(data, length, level)),
+				length, this.numEdges, this.minTime, this.maxTime));
+
+		this.buffer = new byte[this.blockSize];
+		this.position = 0;
+		this.numEdges = 0;
+		this.minTime = Integer.MAX_VALUE;
+		this.maxTime = Integer.MIN_VALUE;
+
+		while (this.pending.size() > this.maxPending) {
+			this.writeBlock();
+		}
+	}
+
+	/**
+	 * Waits for the oldest pending block and appends it to the file.
+	 */
+	private void writeBlock() throws IOException {
+
+		Block block = this.pending.poll();
+		byte[] compressed;
+
+		try {
+			compressed = block.compressed.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while compressing " + this.path + ".", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Compression of a block of " + this.path + " failed.", e.getCause());
+		}
+
+		this.out.write(compressed);
+
+		this.index.writeLong(this.offset);
+		this.index.writeInt(compressed.length);
+		this.index.writeInt(block.length);
+		this.index.writeInt(block.numEdges);
+		this.index.writeInt(block.minTime);
+		this.index.writeInt(block.maxTime);
+
+		this.offset += compressed.length;
+		this.numBlocks++;
+	}
+
+	/**
+	 * @return the block as a complete gzip member
+	 */
+	static byte[] compress(byte[] data, int length, int level) throws IOException {
+
+		ByteArrayOutputStream member = new ByteArrayOutputStream(length / 4 + 64);
+		member.write(GZIP_HEADER);
+
+		Deflater deflater = new Deflater(level, true);
+		try {
+			DeflaterOutputStream deflated = new DeflaterOutputStream(member, deflater, 1 << 16);
+			deflated.write(data, 0, length);
+			deflated.finish();
+		} finally {
+			deflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, length);
+		writeIntLE(member, (int) crc.getValue());
+		writeIntLE(member, length);
+
+		return member.toByteArray();
+	}
+
+	private static void writeIntLE(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+
+			this.submitBlock();
+			while (!this.pending.isEmpty()) {
+				this.writeBlock();
+			}
+
+			this.out.close();
+
+			try (DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(this.path + INDEX_SUFFIX)))) {
+				indexOut.writeInt(INDEX_MAGIC);
+				indexOut.writeInt(INDEX_VERSION);
+				indexOut.writeInt(this.columns);
+				indexOut.writeInt(this.numBlocks);
+				this.indexBytes.writeTo(indexOut);
+			}
+
+		} finally {
+			this.out.close();
+			this.executor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Off-heap {@link IntColumn} split into buffers of 2^28 ints (1 GB), so its
+ * size is not bounded by the maximum array length and its content is never
+ * scanned or moved by the garbage collector.
+ *
+ */
+public class ChunkedIntColumn implements IntColumn {
+	
+	private static final int CHUNK_SHIFT = 28;
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+	
+	private final IntBuffer[] chunks;
+	private final long size;
+	private final File file;
+	
+	private ChunkedIntColumn(IntBuffer[] chunks, long size, File file) {
+		this.chunks = chunks;
+		this.size = size;
+		this.file = file;
+	}
+	
+	private static int numChunks(long size) {
+		return (int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT);
+	}
+	
+	private static long chunkSize(long size, int chunk) {
+		return Math.min(1L << CHUNK_SHIFT, size - ((long) chunk << CHUNK_SHIFT));
+	}
+	
+	public static ChunkedIntColumn allocateDirect(long size) {
+		
+		IntBuffer[] chunks = new IntBuffer[numChunks(size)];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = ByteBuffer.allocateDirect((int) chunkSize(size, i) * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		
+		return new ChunkedIntColumn(chunks, size, null);
+	}
+	
+	/**
+	 * Backs the column with a scratch file in the given directory, deleted on {@link #close()}.
+	 */
+	public static ChunkedIntColumn map(long size, File scratchDirectory) throws IOException {
+		
+		File file = File.createTempFile("column", ".ints", scratchDirectory);
+		file.deleteOnExit();
+		
+		IntBuffer[] chunks = new IntBuffer[numChunks(size)];
+		
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size * 4);
+			
+			FileChannel channel = raf.getChannel();
+			for (int i = 0; i < chunks.length; i++) {
+				long offset = ((long) i << CHUNK_SHIFT) * 4;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, chunkSize(size, i) * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+			}
+		}
+		
+		return new ChunkedIntColumn(chunks, size, file);
+	}
+	
+	@Override
+	public int get(long index) {
+		return this.chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+	}
+	
+	@Override
+	public void set(long index, int value) {
+		this.chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+	}
+	
+	@Override
+	public long size() {
+		return this.size;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		
+		if (this.file != null) {
+			this.file.delete();
+		}
+	}
+
+}
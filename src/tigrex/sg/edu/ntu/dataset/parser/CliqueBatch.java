@@ -0,0 +1,48 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+/**
+ * A batch of timestamped groups of interned vertices (the co-authors of a
+ * publication, the cast of a movie), to be expanded into cliques.
+ *
+ */
+public class CliqueBatch {
+	
+	public static final int DEFAULT_CAPACITY = 1 << 10;
+	
+	private final int[] timestamps;
+	private final int[][] groups;
+	
+	private int size;
+	
+	public CliqueBatch(int capacity) {
+		this.timestamps = new int[capacity];
+		this.groups = new int[capacity][];
+	}
+	
+	public void add(int timestamp, int[] group) {
+		this.timestamps[this.size] = timestamp;
+		this.groups[this.size] = group;
+		this.size++;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	public boolean isFull() {
+		return this.size == this.groups.length;
+	}
+	
+	public int getTimestamp(int i) {
+		return this.timestamps[i];
+	}
+	
+	public int[] getGroup(int i) {
+		return this.groups[i];
+	}
+
+}
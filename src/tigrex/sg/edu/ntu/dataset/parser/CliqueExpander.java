@@ -0,0 +1,330 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expands the groups of every snapshot (co-authors of a publication, cast of
+ * a movie) into cliques, on a fork-join pool.
+ *
+ * Every pair of distinct members is emitted once as a packed (min, max) long
+ * into a primitive buffer, which is then radix-sorted and deduplicated, so
+ * the work per snapshot is a few sequential passes over memory instead of
+ * one hash insert per directed edge. Both directions are only produced when
+ * the {@link SnapshotGraph} is read.
+ *
+ * The snapshots are independent. Large snapshots are additionally split into
+ * ranges of the smaller pair end: each task reads all groups of its snapshot
+ * but only emits the pairs starting in its range, so the sorted results of
+ * the tasks are simply concatenated.
+ *
+ */
+public class CliqueExpander {
+
+	private static final int TASKS_PER_THREAD = 4;
+	private static final int MAX_PARTITIONS = 256;
+
+	private static final int MAX_PAIRS = Integer.MAX_VALUE - 8;
+
+	private static final int RADIX_BITS = 16;
+
+	private final int parallelism;
+
+	private LargeGroupPolicy largeGroupPolicy = LargeGroupPolicy.keepAll();
+
+	final private Logger logger = LoggerFactory.getLogger(CliqueExpander.class);
+
+	public CliqueExpander() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public CliqueExpander(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public void setLargeGroupPolicy(LargeGroupPolicy largeGroupPolicy) {
+		this.largeGroupPolicy = largeGroupPolicy;
+	}
+
+	/**
+	 * @param snapshots the groups of every snapshot; the member ids must be non-negative
+	 */
+	public Map<Integer, SnapshotGraph> expand(Map<Integer, List<int[]>> snapshots) {
+
+		this.logger.info("+expand() on {} threads", this.parallelism);
+
+		long totalWork = 0;
+		Map<Integer, List<int[]>> prepared = new HashMap<Integer, List<int[]>>();
+		Map<Integer, Long> work = new HashMap<Integer, Long>();
+
+		for (Map.Entry<Integer, List<int[]>> entry: snapshots.entrySet()) {
+
+			List<int[]> groups = new ArrayList<int[]>(entry.getValue().size());
+			long w = 0;
+
+			for (int[] group: entry.getValue()) {
+				int[] members = this.largeGroupPolicy.apply(distinctSorted(group));
+				if (members.length > 1) {
+					groups.add(members);
+					w += (long) members.length * (members.length - 1) / 2;
+				}
+			}
+
+			prepared.put(entry.getKey(), groups);
+			work.put(entry.getKey(), w);
+			totalWork += w;
+		}
+
+		long workPerTask = Math.max(1, totalWork / ((long) this.parallelism * TASKS_PER_THREAD));
+
+		List<Integer> taskTimestamps = new ArrayList<Integer>();
+		List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+
+		for (Map.Entry<Integer, List<int[]>> entry: prepared.entrySet()) {
+
+			final List<int[]> groups = entry.getValue();
+			long w = work.get(entry.getKey());
+			int partitions = (int) Math.max(1, Math.min(MAX_PARTITIONS, (w + workPerTask - 1) / workPerTask));
+			int[] boundaries = partitions == 1 ? new int[] {0, Integer.MAX_VALUE} : splitByPairs(groups, w, partitions);
+
+			for (int p = 0; p + 1 < boundaries.length; p++) {
+				final int from = boundaries[p];
+				final int to = boundaries[p + 1];
+
+				taskTimestamps.add(entry.getKey());
+				tasks.add(() -> expand(groups, from, to));
+			}
+		}
+
+		Map<Integer, List<long[]>> partials = new HashMap<Integer, List<long[]>>();
+
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+
+			List<Future<long[]>> results = pool.invokeAll(tasks);
+
+			// Tasks of a snapshot were created in range order
+			for (int i = 0; i < results.size(); i++) {
+				List<long[]> ranges = partials.get(taskTimestamps.get(i));
+				if (ranges == null) {
+					ranges = new ArrayList<long[]>();
+					partials.put(taskTimestamps.get(i), ranges);
+				}
+				ranges.add(results.get(i).get());
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while expanding cliques.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Clique expansion failed.", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		Map<Integer, SnapshotGraph> graphs = new HashMap<Integer, SnapshotGraph>();
+
+		for (Map.Entry<Integer, List<long[]>> entry: partials.entrySet()) {
+
+			List<long[]> ranges = entry.getValue();
+
+			if (ranges.size() == 1) {
+				graphs.put(entry.getKey(), new SnapshotGraph(ranges.get(0), ranges.get(0).length));
+				continue;
+			}
+
+			long numPairs = 0;
+			for (long[] range: ranges) {
+				numPairs += range.length;
+			}
+			checkSize(numPairs);
+
+			long[] pairs = new long[(int) numPairs];
+			int n = 0;
+			for (long[] range: ranges) {
+				System.arraycopy(range, 0, pairs, n, range.length);
+				n += range.length;
+			}
+
+			graphs.put(entry.getKey(), new SnapshotGraph(pairs, n));
+		}
+
+		this.logger.info("-expand() with {} tasks", tasks.size());
+
+		return graphs;
+	}
+
+	/**
+	 * @return the distinct members in ascending order, the group itself if it already is
+	 */
+	static int[] distinctSorted(int[] group) {
+
+		boolean sorted = true;
+		for (int i = 1; i < group.length && sorted; i++) {
+			sorted = group[i - 1] < group[i];
+		}
+
+		if (sorted) {
+			return group;
+		}
+
+		int[] members = group.clone();
+		Arrays.sort(members);
+
+		int n = members.length == 0 ? 0 : 1;
+		for (int i = 1; i < members.length; i++) {
+			if (members[i] != members[n - 1]) {
+				members[n++] = members[i];
+			}
+		}
+
+		return n == members.length ? members : Arrays.copyOf(members, n);
+	}
+
+	/**
+	 * Cuts the vertex ids into ranges that start about the same number of pairs.
+	 *
+	 * @return the range boundaries, starting with 0 and ending with Integer.MAX_VALUE
+	 */
+	private static int[] splitByPairs(List<int[]> groups, long numPairs, int partitions) {
+
+		int maxId = 0;
+		for (int[] group: groups) {
+			maxId = Math.max(maxId, group[group.length - 1]);
+		}
+
+		// The i-th smallest member of a group is the smaller end of k - 1 - i pairs
+		long[] starts = new long[maxId + 1];
+		for (int[] group: groups) {
+			for (int i = 0; i < group.length; i++) {
+				starts[group[i]] += group.length - 1 - i;
+			}
+		}
+
+		int[] boundaries = new int[partitions + 1];
+		int n = 1;
+		long seen = 0;
+
+		for (int id = 0; id <= maxId && n < partitions; id++) {
+			seen += starts[id];
+			if (seen * partitions >= n * numPairs) {
+				boundaries[n++] = id + 1;
+			}
+		}
+
+		boundaries[n++] = Integer.MAX_VALUE;
+
+		return Arrays.copyOf(boundaries, n);
+	}
+
+	/**
+	 * @return the sorted, distinct pairs of the groups whose smaller end is in [from, to)
+	 */
+	private static long[] expand(List<int[]> groups, int from, int to) {
+
+		long count = 0;
+		for (int[] group: groups) {
+			int begin = lowerBound(group, from);
+			int end = lowerBound(group, to);
+			for (int i = begin; i < end; i++) {
+				count += group.length - 1 - i;
+			}
+		}
+		checkSize(count);
+
+		long[] pairs = new long[(int) count];
+		int n = 0;
+
+		for (int[] group: groups) {
+			int begin = lowerBound(group, from);
+			int end = lowerBound(group, to);
+			for (int i = begin; i < end; i++) {
+				for (int j = i + 1; j < group.length; j++) {
+					pairs[n++] = SnapshotGraph.pair(group[i], group[j]);
+				}
+			}
+		}
+
+		pairs = radixSort(pairs, n);
+
+		int distinct = n == 0 ? 0 : 1;
+		for (int i = 1; i < n; i++) {
+			if (pairs[i] != pairs[distinct - 1]) {
+				pairs[distinct++] = pairs[i];
+			}
+		}
+
+		return distinct == pairs.length ? pairs : Arrays.copyOf(pairs, distinct);
+	}
+
+	private static int lowerBound(int[] sorted, int value) {
+
+		int i = Arrays.binarySearch(sorted, value);
+
+		return i < 0 ? -i - 1 : i;
+	}
+
+	private static void checkSize(long numPairs) {
+
+		if (numPairs > MAX_PAIRS) {
+			throw new IllegalStateException(numPairs + " pairs do not fit in an array, use a LargeGroupPolicy.");
+		}
+	}
+
+	/**
+	 * LSD radix sort of non-negative longs on 16-bit digits. Digits that are
+	 * the same in every key, such as the high bits of small ids, are skipped.
+	 *
+	 * @return the sorted keys, either the given array or the scratch one
+	 */
+	static long[] radixSort(long[] keys, int n) {
+
+		long[] from = keys;
+		long[] to = null;
+		int[] counts = new int[1 << RADIX_BITS];
+
+		for (int shift = 0; shift < 64; shift += RADIX_BITS) {
+
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < n; i++) {
+				counts[(int) (from[i] >>> shift) & ((1 << RADIX_BITS) - 1)]++;
+			}
+
+			if (n == 0 || counts[(int) (from[0] >>> shift) & ((1 << RADIX_BITS) - 1)] == n) {
+				continue;
+			}
+
+			int offset = 0;
+			for (int d = 0; d < counts.length; d++) {
+				int count = counts[d];
+				counts[d] = offset;
+				offset += count;
+			}
+
+			if (to == null) {
+				to = new long[keys.length];
+			}
+
+			for (int i = 0; i < n; i++) {
+				to[counts[(int) (from[i] >>> shift) & ((1 << RADIX_BITS) - 1)]++] = from[i];
+			}
+
+			long[] swap = from;
+			from = to;
+			to = swap;
+		}
+
+		return from;
+	}
+
+}
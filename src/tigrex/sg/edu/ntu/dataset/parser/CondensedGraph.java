@@ -0,0 +1,235 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Temporal graph in compressed sparse row form.
+ * 
+ * The outgoing edges of vertex v are the indexes getBegin(v) to getEnd(v) - 1
+ * of three parallel int columns (target, start time, end time), sorted by
+ * target. That is 12 bytes per edge plus 8 bytes per vertex, with no object
+ * per edge.
+ * 
+ * The columns can be kept off the heap (see {@link IntColumn.Storage}), in
+ * which case edge indexes may go beyond 2^31 and the heap only holds the
+ * offsets.
+ *
+ */
+public class CondensedGraph implements Closeable {
+	
+	private final long[] offsets;
+	private final IntColumn targets;
+	private final IntColumn startTimes;
+	private final IntColumn endTimes;
+	
+	private int numVertices;
+	private int minVertexId;
+	private int maxVertexId;
+	private int numSnapshots;
+	private int minTimestamp;
+	private int maxTimestamp;
+	
+	private CondensedGraph(long[] offsets, long numEdges, IntColumn.Storage storage, File scratchDirectory) throws IOException {
+		this.offsets = offsets;
+		this.targets = IntColumn.allocate(storage, numEdges, scratchDirectory);
+		this.startTimes = IntColumn.allocate(storage, numEdges, scratchDirectory);
+		this.endTimes = IntColumn.allocate(storage, numEdges, scratchDirectory);
+	}
+	
+	/**
+	 * Loads a 3-column (end times left at 0) or 4-column temporal edge file in
+	 * two passes: the first counts the out-degree of every vertex, the second
+	 * puts every edge straight into its slot.
+	 * 
+	 * @throws IOException if the file cannot be read or has the same (source, target) twice
+	 */
+	public static CondensedGraph read(String path) throws IOException {
+		return read(path, IntColumn.Storage.HEAP, null);
+	}
+	
+	/**
+	 * @param storage where to keep the edge columns
+	 * @param scratchDirectory where MAPPED columns put their files, null for the default temporary directory
+	 */
+	public static CondensedGraph read(String path, IntColumn.Storage storage, File scratchDirectory) throws IOException {
+		
+		int[] degrees = new int[1024];
+		BitSet vertices = new BitSet();
+		BitSet timestamps = new BitSet();
+		long numEdges = 0;
+		int columns;
+		
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			
+			while (reader.next()) {
+				int source = reader.getSource();
+				
+				if (source >= degrees.length) {
+					degrees = Arrays.copyOf(degrees, Math.max(source + 1, degrees.length * 2));
+				}
+				degrees[source]++;
+				
+				vertices.set(source);
+				vertices.set(reader.getTarget());
+				timestamps.set(reader.getStartTime());
+				numEdges++;
+			}
+			
+			columns = reader.getColumns();
+		}
+		
+		// Every vertex gets a row, including targets without outgoing edges
+		int numRows = vertices.length();
+		long[] offsets = new long[numRows + 1];
+		for (int v = 0; v < numRows; v++) {
+			offsets[v + 1] = offsets[v] + (v < degrees.length ? degrees[v] : 0);
+		}
+		degrees = null;
+		
+		CondensedGraph graph = new CondensedGraph(offsets, numEdges, storage, scratchDirectory);
+		graph.numVertices = vertices.cardinality();
+		graph.minVertexId = vertices.nextSetBit(0);
+		graph.maxVertexId = numRows - 1;
+		graph.numSnapshots = timestamps.cardinality();
+		graph.minTimestamp = timestamps.nextSetBit(0);
+		graph.maxTimestamp = timestamps.length() - 1;
+		
+		long[] cursors = Arrays.copyOf(offsets, numRows);
+		
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			
+			while (reader.next()) {
+				long e = cursors[reader.getSource()]++;
+				graph.targets.set(e, reader.getTarget());
+				graph.startTimes.set(e, reader.getStartTime());
+				graph.endTimes.set(e, columns == 4 ? reader.getEndTime() : 0);
+			}
+		}
+		
+		graph.sortByTarget();
+		
+		return graph;
+	}
+	
+	/**
+	 * Sorts every row by target and rejects duplicate edges.
+	 */
+	private void sortByTarget() throws IOException {
+		
+		int maxDegree = 0;
+		for (int v = 0; v + 1 < this.offsets.length; v++) {
+			maxDegree = (int) Math.max(maxDegree, this.offsets[v + 1] - this.offsets[v]);
+		}
+		
+		long[] keys = new long[maxDegree];
+		int[] starts = new int[maxDegree];
+		int[] ends = new int[maxDegree];
+		
+		for (int v = 0; v + 1 < this.offsets.length; v++) {
+			long begin = this.offsets[v];
+			int degree = (int) (this.offsets[v + 1] - begin);
+			
+			// Sort (target, position) keys, then permute the time columns accordingly
+			for (int i = 0; i < degree; i++) {
+				keys[i] = ((long) this.targets.get(begin + i) << 32) | i;
+			}
+			Arrays.sort(keys, 0, degree);
+			
+			for (int i = 0; i < degree; i++) {
+				long from = begin + (int) keys[i];
+				starts[i] = this.startTimes.get(from);
+				ends[i] = this.endTimes.get(from);
+			}
+			
+			for (int i = 0; i < degree; i++) {
+				int target = (int) (keys[i] >>> 32);
+				
+				if (i > 0 && target == this.targets.get(begin + i - 1)) {
+					throw new IOException("Duplicate edges found (" + v + ", " + target + "), with timestamps "
+							+ starts[i - 1] + ", " + starts[i] + ".");
+				}
+				
+				this.targets.set(begin + i, target);
+				this.startTimes.set(begin + i, starts[i]);
+				this.endTimes.set(begin + i, ends[i]);
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of rows, i.e. one past the largest vertex id
+	 */
+	public int getNumRows() {
+		return this.offsets.length - 1;
+	}
+	
+	public long getNumEdges() {
+		return this.targets.size();
+	}
+	
+	public long getBegin(int vertex) {
+		return this.offsets[vertex];
+	}
+	
+	public long getEnd(int vertex) {
+		return this.offsets[vertex + 1];
+	}
+	
+	public int getTarget(long edge) {
+		return this.targets.get(edge);
+	}
+	
+	public int getStartTime(long edge) {
+		return this.startTimes.get(edge);
+	}
+	
+	public int getEndTime(long edge) {
+		return this.endTimes.get(edge);
+	}
+	
+	public void setEndTime(long edge, int endTime) {
+		this.endTimes.set(edge, endTime);
+	}
+	
+	/**
+	 * @return the number of distinct vertex ids
+	 */
+	public int getNumVertices() {
+		return this.numVertices;
+	}
+	
+	public int getMinVertexId() {
+		return this.minVertexId;
+	}
+	
+	public int getMaxVertexId() {
+		return this.maxVertexId;
+	}
+	
+	/**
+	 * @return the number of distinct start times
+	 */
+	public int getNumSnapshots() {
+		return this.numSnapshots;
+	}
+	
+	public int getMinTimestamp() {
+		return this.minTimestamp;
+	}
+	
+	public int getMaxTimestamp() {
+		return this.maxTimestamp;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.targets.close();
+		this.startTimes.close();
+		this.endTimes.close();
+	}
+
+}
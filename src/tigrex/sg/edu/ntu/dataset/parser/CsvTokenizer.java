@@ -0,0 +1,299 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable RFC 4180 record tokenizer.
+ * 
+ * Each record is read into one reused char buffer and only the offsets of
+ * its fields are recorded; fields become Strings (with "" unescaped to ")
+ * only when asked for. Quoted fields may contain delimiters, escaped quotes
+ * and line breaks. With quoting disabled, as for tab-separated files,
+ * quotes are ordinary characters.
+ *
+ */
+public class CsvTokenizer {
+	
+	private final Reader reader;
+	private final char delimiter;
+	private final boolean quoting;
+	
+	private char[] buffer;
+	private int limit;
+	private boolean eof;
+	
+	private int recordStart;
+	private int recordLength;
+	private int nextRecord;
+	
+	private int numFields;
+	private int[] starts;
+	private int[] ends;
+	private boolean[] escaped;
+	
+	public CsvTokenizer(Reader reader) {
+		this(reader, ',', true);
+	}
+	
+	public CsvTokenizer(Reader reader, char delimiter, boolean quoting) {
+		this.reader = reader;
+		this.delimiter = delimiter;
+		this.quoting = quoting;
+		
+		this.buffer = new char[1 << 16];
+		this.starts = new int[16];
+		this.ends = new int[16];
+		this.escaped = new boolean[16];
+	}
+	
+	/**
+	 * Returns the char at the given offset from the start of the current record,
+	 * reading more input (and moving the record to the front of the buffer) as needed.
+	 * 
+	 * @return the char, or -1 at the end of the input
+	 */
+	private int charAt(int offset) throws IOException {
+		
+		while (this.recordStart + offset >= this.limit) {
+			
+			if (this.eof) {
+				return -1;
+			}
+			
+			if (this.recordStart > 0) {
+				System.arraycopy(this.buffer, this.recordStart, this.buffer, 0, this.limit - this.recordStart);
+				this.limit -= this.recordStart;
+				this.recordStart = 0;
+			} else if (this.limit == this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+			}
+			
+			int read = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+			if (read < 0) {
+				this.eof = true;
+			} else {
+				this.limit += read;
+			}
+		}
+		
+		return this.buffer[this.recordStart + offset];
+	}
+	
+	private void addField(int start, int end, boolean hasEscapes) {
+		
+		if (this.numFields == this.starts.length) {
+			this.starts = Arrays.copyOf(this.starts, this.numFields * 2);
+			this.ends = Arrays.copyOf(this.ends, this.numFields * 2);
+			this.escaped = Arrays.copyOf(this.escaped, this.numFields * 2);
+		}
+		
+		this.starts[this.numFields] = start;
+		this.ends[this.numFields] = end;
+		this.escaped[this.numFields] = hasEscapes;
+		this.numFields++;
+	}
+	
+	/**
+	 * Reads the next record.
+	 * 
+	 * @return false at the end of the input
+	 */
+	public boolean next() throws IOException {
+		
+		this.recordStart = this.nextRecord;
+		this.numFields = 0;
+		
+		if (this.charAt(0) < 0) {
+			return false;
+		}
+		
+		// Field offsets are relative to recordStart, which moves when the buffer is refilled
+		int i = 0;
+		while (true) {
+			
+			int start = i;
+			int end;
+			boolean hasEscapes = false;
+			int c = this.charAt(i);
+			
+			if (this.quoting && c == '"') {
+				
+				// Quoted field: runs to the first quote not followed by another quote
+				start = ++i;
+				while (true) {
+					c = this.charAt(i);
+					if (c < 0) {
+						throw new IOException("Unterminated quoted field.");
+					}
+					if (c == '"') {
+						if (this.charAt(i + 1) == '"') {
+							hasEscapes = true;
+							i += 2;
+							continue;
+						}
+						break;
+					}
+					i++;
+				}
+				end = i++;
+				
+				// Anything between the closing quote and the delimiter is dropped
+				while ((c = this.charAt(i)) >= 0 && c != this.delimiter && c != '\n') {
+					i++;
+				}
+				
+			} else {
+				
+				while ((c = this.charAt(i)) >= 0 && c != this.delimiter && c != '\n') {
+					i++;
+				}
+				end = i;
+				if (c == '\n' && end > start && this.buffer[this.recordStart + end - 1] == '\r') {
+					end--;
+				}
+				
+			}
+			
+			this.addField(start, end, hasEscapes);
+			
+			if (c < 0 || c == '\n') {
+				this.recordLength = i;
+				this.nextRecord = this.recordStart + (c < 0 ? i : i + 1);
+				return true;
+			}
+			
+			// Skip the delimiter; a delimiter at the end of the record leaves an empty last field
+			i++;
+		}
+	}
+	
+	public int getNumFields() {
+		return this.numFields;
+	}
+	
+	public String getString(int field) {
+		
+		int start = this.recordStart + this.starts[field];
+		int end = this.recordStart + this.ends[field];
+		
+		if (!this.escaped[field]) {
+			return new String(this.buffer, start, end - start);
+		}
+		
+		StringBuilder builder = new StringBuilder(end - start);
+		for (int i = start; i < end; i++) {
+			builder.append(this.buffer[i]);
+			if (this.buffer[i] == '"') {
+				i++;
+			}
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Parses a field as an int without creating a String.
+	 */
+	public int getInt(int field) {
+		return this.getInt(field, 0);
+	}
+	
+	/**
+	 * Parses a field as an int, skipping a fixed-length prefix such as the
+	 * "tt" of IMDb title ids.
+	 */
+	public int getInt(int field, int prefixLength) {
+		
+		int start = this.recordStart + this.starts[field] + prefixLength;
+		int end = this.recordStart + this.ends[field];
+		
+		while (start < end && this.buffer[start] == ' ') {
+			start++;
+		}
+		while (end > start && this.buffer[end - 1] == ' ') {
+			end--;
+		}
+		
+		boolean negative = start < end && this.buffer[start] == '-';
+		if (negative) {
+			start++;
+		}
+		
+		if (start >= end) {
+			throw new NumberFormatException("Empty field " + field + ".");
+		}
+		
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			char c = this.buffer[i];
+			if (c < '0' || c > '9' || value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Field " + field + " is not an int: " + this.getString(field) + ".");
+			}
+			value = value * 10 + (c - '0');
+		}
+		
+		if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+			throw new NumberFormatException("Field " + field + " is not an int: " + this.getString(field) + ".");
+		}
+		
+		return (int) (negative ? -value : value);
+	}
+	
+	/**
+	 * @return whether the field is exactly the given text
+	 */
+	public boolean equals(int field, String text) {
+		
+		if (this.escaped[field] || this.ends[field] - this.starts[field] != text.length()) {
+			return false;
+		}
+		
+		for (int i = 0; i < text.length(); i++) {
+			if (this.buffer[this.recordStart + this.starts[field] + i] != text.charAt(i)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Splits a field on a separator and adds the trimmed, non-empty parts.
+	 */
+	public void split(int field, char separator, List<String> parts) {
+		
+		String value = this.escaped[field] ? this.getString(field) : null;
+		char[] chars = value == null ? this.buffer : value.toCharArray();
+		int start = value == null ? this.recordStart + this.starts[field] : 0;
+		int end = value == null ? this.recordStart + this.ends[field] : chars.length;
+		
+		int partStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || chars[i] == separator) {
+				int s = partStart;
+				int e = i;
+				while (s < e && Character.isWhitespace(chars[s])) {
+					s++;
+				}
+				while (e > s && Character.isWhitespace(chars[e - 1])) {
+					e--;
+				}
+				if (e > s) {
+					parts.add(new String(chars, s, e - s));
+				}
+				partStart = i + 1;
+			}
+		}
+	}
+	
+	/**
+	 * @return the raw text of the current record, for error messages
+	 */
+	public String getRecord() {
+		return new String(this.buffer, this.recordStart, this.recordLength);
+	}
+
+}
@@ -0,0 +1,149 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a dataset from its raw dump to the final files in one pass over
+ * {@link Pipeline}, without intermediate text files: growth files to
+ * ".teg.sim.deletions", and the clique datasets to ".teg.sim".
+ *
+ */
+public class DatasetPipeline {
+	
+	private DeletionModel deletionModel = DeletionModel.uniform();
+	
+	private long memoryBudget = ExternalEdgeSorter.DEFAULT_MEMORY_BUDGET;
+	
+	private File scratchDirectory;
+	
+	private long reportPeriod = 60;
+	
+	private TimeBucketing timeBucketing;
+	
+	final private Logger logger = LoggerFactory.getLogger(DatasetPipeline.class);
+	
+	public void setDeletionModel(DeletionModel deletionModel) {
+		this.deletionModel = deletionModel;
+	}
+	
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+	
+	public void setScratchDirectory(File scratchDirectory) {
+		this.scratchDirectory = scratchDirectory;
+	}
+	
+	/**
+	 * Collapses the timestamps of growth files into coarser snapshots before
+	 * renumbering; null, the default, keeps the raw timestamps.
+	 */
+	public void setTimeBucketing(TimeBucketing timeBucketing) {
+		this.timeBucketing = timeBucketing;
+	}
+	
+	/**
+	 * @param reportPeriod the seconds between two progress lines
+	 */
+	public void setReportPeriod(long reportPeriod) {
+		this.reportPeriod = reportPeriod;
+	}
+	
+	/**
+	 * Runs the pipeline with progress reporting and writes the metrics
+	 * summary to "outputPath.metrics.json".
+	 */
+	private void run(Pipeline pipeline, String name, String path, String outputPath) throws IOException {
+		
+		RunMetrics metrics = new RunMetrics(name);
+		pipeline.setMetrics(metrics);
+		metrics.startReporting(this.reportPeriod);
+		
+		try {
+			pipeline.run();
+		} finally {
+			metrics.stopReporting();
+		}
+		
+		List<StageMetrics> stages = metrics.getStages();
+		stages.get(0).addBytesRead(new File(path).length());
+		stages.get(stages.size() - 1).addBytesWritten(new File(outputPath).length());
+		
+		metrics.writeSummary(outputPath + ".metrics.json");
+	}
+	
+	/**
+	 * Converts, optionally buckets, renumbers and generates deletions for a growth file; the
+	 * mappings go to "path.teg.sim.vertices" and "path.teg.sim.timestamps".
+	 * 
+	 * @param outputPath the ".deletions" output, binary if it ends with ".bin"
+	 */
+	public void growth(String path, GrowthFileConverter converter, String outputPath) throws IOException {
+		
+		this.logger.info("+growth({})", path);
+		
+		Pipeline.Builder<EdgeBatch> parsed = Pipeline.from("parse", PipelineSources.growth(path, converter));
+		
+		if (this.timeBucketing != null) {
+			parsed = parsed.then("bucket", PipelineStages.bucket(this.timeBucketing, this.memoryBudget, this.scratchDirectory));
+		}
+		
+		Pipeline pipeline = parsed
+				.then("renumber", PipelineStages.renumber(path + ".teg.sim", this.scratchDirectory))
+				.then("deletions", PipelineStages.deletions(this.deletionModel, 0, this.memoryBudget, this.scratchDirectory))
+				.to("write", PipelineStages.edgeFile(outputPath, 4));
+		
+		this.run(pipeline, "growth", path, outputPath);
+		
+		this.logger.info("-growth({})", path);
+	}
+	
+	/**
+	 * Expands the groups of a clique dataset (dblp, IMDb) into a normalized TEG.
+	 * 
+	 * @param path the raw input read by the source
+	 * @param outputPath the ".teg.sim" output, binary if it ends with ".bin"
+	 */
+	public void cliques(PipelineSources.CliqueSource source, String path, String outputPath) throws IOException {
+		
+		this.logger.info("+cliques({})", outputPath);
+		
+		Pipeline pipeline = Pipeline.from("parse", source)
+				.then("expand", PipelineStages.cliqueExpand(source, outputPath))
+				.to("write", PipelineStages.edgeFile(outputPath, 3));
+		
+		this.run(pipeline, "cliques", path, outputPath);
+		
+		this.logger.info("-cliques({})", outputPath);
+	}
+	
+	public static void main(String[] args) {
+		
+		DatasetPipeline pipeline = new DatasetPipeline();
+		
+		try {
+			
+//			String path = "raw/dblp-2018-01-01.xml.gz";
+//			pipeline.cliques(PipelineSources.dblp(path, "dblp-2017-08-29.dtd"), path, InputFiles.stripCompression(path) + ".teg.sim");
+			
+//			String path = "raw/IMDB-Movie-Data.csv";
+//			pipeline.cliques(PipelineSources.imdb(path), path, path + ".teg.sim");
+			
+//			String path = "raw/wikipedia-growth.txt";
+//			pipeline.growth(path, new GrowthFileConverter(4, false, true), path + ".teg.sim.deletions");
+			
+			String path = "raw/youtube-d-growth.txt";
+			pipeline.growth(path, new GrowthFileConverter(3, true, false), path + ".teg.sim.deletions");
+			
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+	}
+
+}
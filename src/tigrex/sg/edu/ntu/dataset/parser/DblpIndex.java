@@ -0,0 +1,310 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Compact index of the publications of one dblp release, kept between runs
+ * of the incremental mode of {@link DblpPreprocessor}.
+ *
+ * Every record is stored as the 64-bit hash of its dblp key, its year and
+ * its sorted author ids. The author dictionary and the ids of the
+ * disambiguation names are stored with it, so that author ids stay stable
+ * from one release to the next, and so is the fingerprint of the
+ * {@link LargeGroupPolicy} the shards were expanded with. Version 1 indexes
+ * have no fingerprint and read as expanded with an unknown policy.
+ *
+ * <pre>
+ * int magic, int version
+ * UTF policy fingerprint, empty if unknown
+ * int numAuthors, numAuthors x UTF name
+ * int numDisambiguations, numDisambiguations x varint id
+ * int numRecords, numRecords x (long key hash, varint year, varint n, n x varint id delta)
+ * </pre>
+ *
+ */
+public class DblpIndex {
+
+	static final int MAGIC = 0x44424C58;
+	static final int VERSION = 2;
+
+	private final VertexDictionary authors;
+	private IntHashSet disambiguations = new IntHashSet();
+	private String policy;
+
+	private long[] keys = new long[1024];
+	private int[] offsets = new int[1025];
+	private int[] data = new int[4096];
+	private int size;
+
+	private final LongIntHashMap positions = new LongIntHashMap(1024);
+
+	public DblpIndex(VertexDictionary authors) {
+		this.authors = authors;
+	}
+
+	/**
+	 * FNV-1a over the chars of the key, followed by a final mix.
+	 * Collisions are not detected; with 64 bits they are not expected
+	 * below billions of keys.
+	 */
+	public static long hash(String key) {
+
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	/**
+	 * Adds a record. A key added twice keeps the last record.
+	 *
+	 * @param authors the author ids in ascending order
+	 */
+	public void add(long key, int year, int[] authors) {
+
+		if (this.size == this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, this.size * 2);
+			this.offsets = Arrays.copyOf(this.offsets, this.size * 2 + 1);
+		}
+
+		int offset = this.offsets[this.size];
+		int end = offset + 1 + authors.length;
+		if (end > this.data.length) {
+			this.data = Arrays.copyOf(this.data, Math.max(end, this.data.length * 2));
+		}
+
+		this.data[offset] = year;
+		System.arraycopy(authors, 0, this.data, offset + 1, authors.length);
+
+		this.keys[this.size] = key;
+		this.offsets[this.size + 1] = end;
+		this.positions.put(key, this.size);
+		this.size++;
+	}
+
+	/**
+	 * @return the position of the record with the key, or -1
+	 */
+	public int find(long key) {
+		return this.positions.get(key, -1);
+	}
+
+	/**
+	 * @return false for records shadowed by a later record with the same key
+	 */
+	public boolean isLive(int position) {
+		return this.positions.get(this.keys[position], -1) == position;
+	}
+
+	public int getYear(int position) {
+		return this.data[this.offsets[position]];
+	}
+
+	public int[] getAuthors(int position) {
+		return Arrays.copyOfRange(this.data, this.offsets[position] + 1, this.offsets[position + 1]);
+	}
+
+	/**
+	 * @return true if the record has the given year and authors
+	 */
+	public boolean equals(int position, int year, int[] authors) {
+
+		int offset = this.offsets[position];
+		if (this.data[offset] != year || this.offsets[position + 1] - offset - 1 != authors.length) {
+			return false;
+		}
+
+		for (int i = 0; i < authors.length; i++) {
+			if (this.data[offset + 1 + i] != authors[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the number of records, including shadowed ones
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public VertexDictionary getAuthorDictionary() {
+		return this.authors;
+	}
+
+	public IntHashSet getDisambiguations() {
+		return this.disambiguations;
+	}
+
+	public void setDisambiguations(IntHashSet disambiguations) {
+		this.disambiguations = disambiguations;
+	}
+
+	/**
+	 * @return the fingerprint of the large group policy, or null if unknown
+	 * @see LargeGroupPolicy#getFingerprint()
+	 */
+	public String getPolicy() {
+		return this.policy;
+	}
+
+	public void setPolicy(String policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Writes the index to a temporary file next to the path and moves it in
+	 * place, so that an interrupted run leaves the previous index intact.
+	 */
+	public void write(File file) throws IOException {
+
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(this.policy == null ? "" : this.policy);
+
+			out.writeInt(this.authors.size());
+			for (int id = 0; id < this.authors.size(); id++) {
+				out.writeUTF(this.authors.getName(id));
+			}
+
+			int[] disambiguations = this.disambiguations.toArray();
+			out.writeInt(disambiguations.length);
+			for (int id: disambiguations) {
+				writeVarint(out, id);
+			}
+
+			int numLive = 0;
+			for (int i = 0; i < this.size; i++) {
+				if (this.isLive(i)) {
+					numLive++;
+				}
+			}
+
+			out.writeInt(numLive);
+			for (int i = 0; i < this.size; i++) {
+
+				if (!this.isLive(i)) {
+					continue;
+				}
+
+				int offset = this.offsets[i];
+				int end = this.offsets[i + 1];
+
+				out.writeLong(this.keys[i]);
+				writeVarint(out, this.data[offset]);
+				writeVarint(out, end - offset - 1);
+
+				int previous = 0;
+				for (int j = offset + 1; j < end; j++) {
+					writeVarint(out, this.data[j] - previous);
+					previous = this.data[j];
+				}
+			}
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public static DblpIndex read(File file) throws IOException {
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+
+			int magic = in.readInt();
+			int version = in.readInt();
+			if (magic != MAGIC || version < 1 || version > VERSION) {
+				throw new IOException(file + " is not a dblp index.");
+			}
+
+			String policy = version >= 2 ? in.readUTF() : "";
+
+			VertexDictionary authors = new VertexDictionary();
+			int numAuthors = in.readInt();
+			for (int id = 0; id < numAuthors; id++) {
+				if (authors.getOrAdd(in.readUTF()) != id) {
+					throw new IOException("Duplicate author name in " + file + ".");
+				}
+			}
+
+			DblpIndex index = new DblpIndex(authors);
+			index.policy = policy.isEmpty() ? null : policy;
+
+			int numDisambiguations = in.readInt();
+			for (int i = 0; i < numDisambiguations; i++) {
+				index.disambiguations.add(readVarint(in));
+			}
+
+			int numRecords = in.readInt();
+			int[] ids = new int[16];
+
+			for (int i = 0; i < numRecords; i++) {
+
+				long key = in.readLong();
+				int year = readVarint(in);
+				int n = readVarint(in);
+
+				if (n > ids.length) {
+					ids = new int[n];
+				}
+
+				int previous = 0;
+				for (int j = 0; j < n; j++) {
+					previous += readVarint(in);
+					ids[j] = previous;
+				}
+
+				index.add(key, year, n == ids.length ? ids : Arrays.copyOf(ids, n));
+			}
+
+			return index;
+		}
+	}
+
+	private static void writeVarint(DataOutput out, int value) throws IOException {
+
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarint(DataInput in) throws IOException {
+
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Malformed varint.");
+	}
+
+}
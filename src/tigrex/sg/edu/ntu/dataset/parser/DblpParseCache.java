@@ -0,0 +1,230 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a parsed dblp dump: the author dictionary, the ids of
+ * the disambiguation names and the co-author lists of every year.
+ *
+ * The cache is keyed by the size and modification time of the dump, and is
+ * memory-mapped when read, so that a run on an unchanged dump skips the XML
+ * parse entirely.
+ *
+ * <pre>
+ * int magic, int version, long input size, long input mtime
+ * int numAuthors, numAuthors x (int length, UTF-8 name)
+ * int numDisambiguations, numDisambiguations x int id
+ * int numYears, numYears x (int year, int numPublications, numPublications x (int n, n x int id))
+ * </pre>
+ *
+ */
+public class DblpParseCache {
+
+	static final int MAGIC = 0x44424C43;
+	static final int VERSION = 1;
+
+	private final VertexDictionary authors;
+	private final IntHashSet disambiguations;
+	private final Map<Integer, List<int[]>> yearlyPublications;
+
+	public DblpParseCache(VertexDictionary authors, IntHashSet disambiguations, Map<Integer, List<int[]>> yearlyPublications) {
+		this.authors = authors;
+		this.disambiguations = disambiguations;
+		this.yearlyPublications = yearlyPublications;
+	}
+
+	public VertexDictionary getAuthors() {
+		return this.authors;
+	}
+
+	public IntHashSet getDisambiguations() {
+		return this.disambiguations;
+	}
+
+	public Map<Integer, List<int[]>> getYearlyPublications() {
+		return this.yearlyPublications;
+	}
+
+	/**
+	 * Writes the cache for the given input to a temporary file and moves it in place.
+	 */
+	public void write(File file, File input) throws IOException {
+
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(input.length());
+			out.writeLong(input.lastModified());
+
+			out.writeInt(this.authors.size());
+			for (int id = 0; id < this.authors.size(); id++) {
+				byte[] name = this.authors.getName(id).getBytes(StandardCharsets.UTF_8);
+				out.writeInt(name.length);
+				out.write(name);
+			}
+
+			int[] disambiguations = this.disambiguations.toArray();
+			out.writeInt(disambiguations.length);
+			for (int id: disambiguations) {
+				out.writeInt(id);
+			}
+
+			out.writeInt(this.yearlyPublications.size());
+			for (Map.Entry<Integer, List<int[]>> entry: this.yearlyPublications.entrySet()) {
+
+				out.writeInt(entry.getKey());
+				out.writeInt(entry.getValue().size());
+
+				for (int[] coauthors: entry.getValue()) {
+					out.writeInt(coauthors.length);
+					for (int id: coauthors) {
+						out.writeInt(id);
+					}
+				}
+			}
+		}
+
+		if (temp.length() > Integer.MAX_VALUE) {
+			temp.delete();
+			throw new IOException("Parse cache of " + temp.length() + " bytes is too large to map.");
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * @return the cached parse, or null if there is no cache or it was made from another version of the input
+	 * @throws IOException if the cache cannot be read or is truncated or corrupt
+	 */
+	public static DblpParseCache read(File file, File input) throws IOException {
+
+		if (!file.exists() || file.length() < 24) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| buffer.getLong() != input.length() || buffer.getLong() != input.lastModified()) {
+				return null;
+			}
+
+			VertexDictionary authors = new VertexDictionary();
+			int numAuthors = readCount(buffer, 4, file);
+			byte[] name = new byte[256];
+
+			for (int id = 0; id < numAuthors; id++) {
+				int length = readCount(buffer, 1, file);
+				if (length > name.length) {
+					name = new byte[Math.max(length, name.length * 2)];
+				}
+				buffer.get(name, 0, length);
+				authors.getOrAdd(new String(name, 0, length, StandardCharsets.UTF_8));
+			}
+
+			// The rest of the cache is ints only
+			IntBuffer ints = buffer.asIntBuffer();
+
+			int numDisambiguations = readCount(ints, 1, file);
+			IntHashSet disambiguations = new IntHashSet(numDisambiguations);
+			for (int i = 0; i < numDisambiguations; i++) {
+				disambiguations.add(readId(ints, numAuthors, file));
+			}
+
+			int numYears = readCount(ints, 2, file);
+			Map<Integer, List<int[]>> yearlyPublications = new HashMap<Integer, List<int[]>>(numYears * 2);
+
+			for (int y = 0; y < numYears; y++) {
+
+				if (ints.remaining() < 2) {
+					throw corrupt(file);
+				}
+				int year = ints.get();
+				int numPublications = readCount(ints, 1, file);
+				List<int[]> publications = new ArrayList<int[]>(numPublications);
+
+				for (int p = 0; p < numPublications; p++) {
+					int[] coauthors = new int[readCount(ints, 1, file)];
+					for (int i = 0; i < coauthors.length; i++) {
+						coauthors[i] = readId(ints, numAuthors, file);
+					}
+					publications.add(coauthors);
+				}
+
+				yearlyPublications.put(year, publications);
+			}
+
+			if (ints.hasRemaining()) {
+				throw corrupt(file);
+			}
+
+			return new DblpParseCache(authors, disambiguations, yearlyPublications);
+		}
+	}
+
+	/**
+	 * Reads a count and checks that at least that many entries of the given size can follow.
+	 */
+	private static int readCount(MappedByteBuffer buffer, int entrySize, File file) throws IOException {
+
+		if (buffer.remaining() < 4) {
+			throw corrupt(file);
+		}
+
+		int count = buffer.getInt();
+		if (count < 0 || (long) count * entrySize > buffer.remaining()) {
+			throw corrupt(file);
+		}
+
+		return count;
+	}
+
+	private static int readCount(IntBuffer ints, int entrySize, File file) throws IOException {
+
+		if (!ints.hasRemaining()) {
+			throw corrupt(file);
+		}
+
+		int count = ints.get();
+		if (count < 0 || (long) count * entrySize > ints.remaining()) {
+			throw corrupt(file);
+		}
+
+		return count;
+	}
+
+	private static int readId(IntBuffer ints, int numAuthors, File file) throws IOException {
+
+		int id = ints.get();
+		if (id < 0 || id >= numAuthors) {
+			throw corrupt(file);
+		}
+
+		return id;
+	}
+
+	private static IOException corrupt(File file) {
+		return new IOException("Parse cache " + file + " is truncated or corrupt.");
+	}
+
+}
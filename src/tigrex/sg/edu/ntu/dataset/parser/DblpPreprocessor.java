@@ -2,65 +2,131 @@
 package tigrex.sg.edu.ntu.dataset.parser;
 
 import java.io.BufferedWriter;
-import java.io.FileNotFoundException;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-import org.dblp.DblpInterface;
-import org.dblp.mmdb.Person;
-import org.dblp.mmdb.PersonName;
-import org.dblp.mmdb.Publication;
-import org.dblp.mmdb.datastructure.SimpleLazyCoauthorGraph;
+import javax.xml.stream.XMLStreamException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.SAXException;
 
 /**
  * http://dblp.org/xml/release/
  * dblp-2018-01-01.xml.gz
  * 
+ * A release is either processed from scratch, or with {@link #update(String, String, String)}
+ * as a patch on the previous release processed in the same directory.
+ * 
  * @author Ni Peng
  *
  */
 public class DblpPreprocessor {
 	
-	private DblpInterface dblp;
+	private DblpXmlReader reader;
+	
+	private VertexDictionary authors;
+	
+	private IntHashSet disambiguations;
 
-	private Map<Integer, List<List<String>>> yearlyPublications;
+	private Map<Integer, List<int[]>> yearlyPublications;
+	
+	private Map<Integer, SnapshotGraph> teg;
+	
+	private RunMetrics metrics = new RunMetrics("dblp");
 	
-	private Map<Integer, Map<String, Set<String>>> teg;
+	private StageMetrics parseMetrics;
+	
+	private boolean useCache = true;
+	
+	private LargeGroupPolicy largeGroupPolicy = LargeGroupPolicy.keepAll();
 	
 	final private Logger logger = LoggerFactory.getLogger(DblpPreprocessor.class);
 
+	public RunMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * Whether {@link #getParser(String)} reuses and writes the parse cache "path.cache".
+	 * 
+	 * @see DblpParseCache
+	 */
+	public void setUseCache(boolean useCache) {
+		this.useCache = useCache;
+	}
+	
+	/**
+	 * What to do with hyper-authored papers, e.g. {@link LargeGroupPolicy#sample(int, long)}.
+	 */
+	public void setLargeGroupPolicy(LargeGroupPolicy largeGroupPolicy) {
+		this.largeGroupPolicy = largeGroupPolicy;
+	}
+	
 	public void getParser(String path) {
 		
 		long start = System.currentTimeMillis();
 		this.logger.info("+getParser({})", path);
+		
+		File input = new File(path);
+		File cacheFile = new File(path + ".cache");
+		
+		if (this.useCache && this.readCache(cacheFile, input)) {
+			this.logger.info("Cache read: {} years, {} persons.", this.yearlyPublications.size(), this.authors.size());
+			this.logger.info("Get parser time: {} seconds.", (System.currentTimeMillis()-start)*1.0/1000);
+			this.logger.info("-getParser({})", path);
+			return;
+		}
 
 		// we need to raise entityExpansionLimit because the dblp.xml has millions of entities
 		System.setProperty("entityExpansionLimit", "10000000");
 
-		this.logger.debug("Building the dblp main memory DB...");
+		this.logger.debug("Streaming the dblp XML...");
+		
+		this.reader = new DblpXmlReader("dblp-2017-08-29.dtd");
+		this.authors = new VertexDictionary();
+		this.yearlyPublications = new HashMap<Integer, List<int[]>>();
+		this.parseMetrics = this.metrics.stage("parse");
 		
 		try {
-			this.dblp = new SimpleLazyCoauthorGraph(path);
+			this.reader.read(path, (key, year, names) -> this.addPublication(year, names));
 		} catch (final IOException ex) {
 			this.logger.error("Cannot read dblp XML: {}.", ex.getMessage());
 			return;
-		} catch (final SAXException ex) {
+		} catch (final XMLStreamException ex) {
 			this.logger.error("cannot parse XML: {}.", ex.getMessage());
 			return;
+		} finally {
+			this.parseMetrics.addBytesRead(new File(path).length());
+			this.parseMetrics.finish();
 		}
 		
-		this.logger.info("MMDB ready: {} publications, {} persons.", this.dblp.numberOfPublications(), this.dblp.numberOfPersons());
+		this.logger.info("XML read: {} publications, {} persons.", this.reader.getNumRecords(), this.authors.size());
+		
+		// Disambiguation pages may come after the publications that use their names, 
+		// so they can only be dropped once the whole XML has been read
+		this.disambiguations = new IntHashSet();
+		for (String name: this.reader.getDisambiguations()) {
+			int id = this.authors.get(name);
+			if (id >= 0) {
+				this.disambiguations.add(id);
+			}
+		}
+		
+		if (this.useCache) {
+			try {
+				new DblpParseCache(this.authors, this.disambiguations, this.yearlyPublications).write(cacheFile, input);
+			} catch (IOException e) {
+				this.logger.warn("Cannot write parse cache: {}.", e.getMessage());
+			}
+		}
 		
 		long end = System.currentTimeMillis();
 		this.logger.info("Get parser time: {} seconds.", (end-start)*1.0/1000);
@@ -68,18 +134,60 @@ public class DblpPreprocessor {
 
 	}
 	
-	public void analyzeAuthors() {
+	private boolean readCache(File cacheFile, File input) {
 		
-		this.logger.info("+analyzeAuthors()");
+		StageMetrics stage = this.metrics.stage("cache");
 		
-		int totalCount = this.dblp.getPersons().size();
-		int disambiguationCount = 0;
-		for(Person person: this.dblp.getPersons()) {
-			if (person.isDisambiguation()) {
-				disambiguationCount++;
+		try {
+			
+			DblpParseCache cache = DblpParseCache.read(cacheFile, input);
+			if (cache == null) {
+				return false;
 			}
 			
+			this.authors = cache.getAuthors();
+			this.disambiguations = cache.getDisambiguations();
+			this.yearlyPublications = cache.getYearlyPublications();
+			
+			for (List<int[]> publications: this.yearlyPublications.values()) {
+				stage.addRecords(publications.size());
+			}
+			stage.addBytesRead(cacheFile.length());
+			
+			return true;
+			
+		} catch (IOException e) {
+			this.logger.warn("Ignoring parse cache: {}.", e.getMessage());
+			return false;
+		} finally {
+			stage.finish();
 		}
+	}
+	
+	private void addPublication(int year, List<String> names) {
+		
+		IntHashSet coauthors = new IntHashSet(names.size());
+		for (String name: names) {
+			coauthors.add(this.authors.getOrAdd(name));
+		}
+		
+		List<int[]> publications = this.yearlyPublications.get(year);
+		if (publications == null) {
+			publications = new ArrayList<int[]>();
+			this.yearlyPublications.put(year, publications);
+		}
+		publications.add(coauthors.toArray());
+		
+		this.parseMetrics.addRecords(1);
+		
+	}
+	
+	public void analyzeAuthors() {
+		
+		this.logger.info("+analyzeAuthors()");
+		
+		int totalCount = this.authors.size();
+		int disambiguationCount = this.disambiguations.size();
 		
 		this.logger.info("Total number of authors is {}, disambiguation count is {}.", totalCount, disambiguationCount);
 		
@@ -90,35 +198,35 @@ public class DblpPreprocessor {
 	public void getYearlyPublications() {
 		
 		this.logger.info("+getYearlyPublications()");
-
-		this.yearlyPublications = new HashMap<Integer, List<List<String>>>();
+		
+		IntHashSet disambiguations = this.disambiguations;
 		
 		int numPublications = 0;
 		
-		for (Publication publication: dblp.getPublications()) {
-			int year = publication.getYear();
-			
-			List<String> coauthors = new LinkedList<String>();
+		Iterator<Map.Entry<Integer, List<int[]>>> it = this.yearlyPublications.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, List<int[]>> entry = it.next();
 			
-			for (PersonName name: publication.getNames()) {
+			List<int[]> publications = new ArrayList<int[]>(entry.getValue().size());
+			for (int[] coauthors: entry.getValue()) {
 				
-				if (name.getPerson().isDisambiguation()) {
-					continue;
+				int n = 0;
+				for (int author: coauthors) {
+					if (!disambiguations.contains(author)) {
+						coauthors[n++] = author;
+					}
+				}
+				
+				if (n > 0) {
+					publications.add(n == coauthors.length ? coauthors : Arrays.copyOf(coauthors, n));
 				}
-	
-				coauthors.add(name.getName());
 			}
 			
-			if (coauthors.size() > 0) {
-				if (this.yearlyPublications.containsKey(year)) {
-					this.yearlyPublications.get(year).add(coauthors);
-				} else {
-					List<List<String>> publications = new LinkedList<List<String>>();
-					publications.add(coauthors);
-					this.yearlyPublications.put(year, publications);
-				}
-				
-				numPublications++;
+			if (publications.isEmpty()) {
+				it.remove();
+			} else {
+				entry.setValue(publications);
+				numPublications += publications.size();
 			}
 			
 		}
@@ -133,88 +241,367 @@ public class DblpPreprocessor {
 		
 		this.logger.info("+generateTEG()");
 		
-		this.teg = new HashMap<Integer, Map<String, Set<String>>>();
+		StageMetrics stage = this.metrics.stage("expand");
 		
-		for (Integer year: this.yearlyPublications.keySet()) {
-			List<List<String>> publications = this.yearlyPublications.get(year);
-			
-			Map<String, Set<String>> graph = new HashMap<String, Set<String>>();
-			teg.put(year, graph);
+		CliqueExpander expander = new CliqueExpander();
+		expander.setLargeGroupPolicy(this.largeGroupPolicy);
+		this.teg = expander.expand(this.yearlyPublications);
+		
+		for (SnapshotGraph graph: this.teg.values()) {
+			stage.addRecords(graph.getNumEdges());
+		}
+		stage.finish();
+		
+		this.logger.info("-generateTEG()");
+
+	}
+	
+	/**
+	 * Writes the normalized TEG (".teg.sim") with the author and year mappings next to it.
+	 */
+	public void writeGraphToFile(String path) {
+		
+		this.logger.info("+writeGraphToFile()");
+		
+		StageMetrics stage = this.metrics.stage("write");
+		
+		try {
+			new NormalizedTegWriter().write(this.teg, this.authors, path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		for (SnapshotGraph graph: this.teg.values()) {
+			stage.addRecords(graph.getNumEdges());
+		}
+		stage.addBytesWritten(new File(path).length());
+		stage.finish();
+		
+		this.logger.info("-writeGraphToFile()");
 			
-			for (List<String> authors: publications) {
+	}
+
+	/**
+	 * Incremental mode for successive dblp releases.
+	 * 
+	 * The directory keeps the {@link DblpIndex} of the last release and one
+	 * shard of edges per year, "year.teg.bin", with the stable author ids of
+	 * the index. The new release is diffed against the index by dblp key, and
+	 * only the years of added, changed or removed records (or of records whose
+	 * authors joined or left the disambiguation pages) are expanded and
+	 * rewritten. The normalized ".teg.sim" is then assembled from the shards.
+	 * 
+	 * The first run in an empty directory builds every year, and so does a run
+	 * whose large group policy differs from the one stored in the index (or
+	 * has no fingerprint).
+	 */
+	public void update(String path, String directory, String outputPath) {
+		
+		this.logger.info("+update({})", path);
+		
+		File dir = new File(directory);
+		dir.mkdirs();
+		File indexFile = new File(dir, "dblp.index");
+		
+		DblpIndex previous;
+		try {
+			previous = indexFile.exists() ? DblpIndex.read(indexFile) : new DblpIndex(new VertexDictionary());
+		} catch (IOException e) {
+			this.logger.error("Cannot read dblp index: {}.", e.getMessage());
+			System.exit(1);
+			return;
+		}
+		
+		System.setProperty("entityExpansionLimit", "10000000");
+		
+		this.reader = new DblpXmlReader("dblp-2017-08-29.dtd");
+		this.authors = previous.getAuthorDictionary();
+		this.parseMetrics = this.metrics.stage("diff");
+		
+		DblpIndex current = new DblpIndex(this.authors);
+		boolean[] seen = new boolean[previous.size()];
+		IntHashSet affectedYears = new IntHashSet();
+		int[] counts = new int[3];
+		
+		try {
+			this.reader.read(path, (key, year, names) -> {
 				
-				for (String author: authors) {
-					
-					if (graph.containsKey(author)) {
-						graph.get(author).addAll(authors);
-					} else {
-						Set<String> coauthors = new HashSet<String>();
-						coauthors.addAll(authors);
-						graph.put(author, coauthors);
+				IntHashSet coauthors = new IntHashSet(names.size());
+				for (String name: names) {
+					coauthors.add(this.authors.getOrAdd(name));
+				}
+				int[] ids = coauthors.toArray();
+				Arrays.sort(ids);
+				
+				long hash = DblpIndex.hash(key);
+				current.add(hash, year, ids);
+				
+				int old = previous.find(hash);
+				if (old < 0) {
+					affectedYears.add(year);
+					counts[0]++;
+				} else if (!seen[old]) {
+					seen[old] = true;
+					if (!previous.equals(old, year, ids)) {
+						affectedYears.add(year);
+						affectedYears.add(previous.getYear(old));
+						counts[1]++;
 					}
-					
 				}
 				
+				this.parseMetrics.addRecords(1);
+			});
+		} catch (final IOException ex) {
+			this.logger.error("Cannot read dblp XML: {}.", ex.getMessage());
+			System.exit(1);
+			return;
+		} catch (final XMLStreamException ex) {
+			this.logger.error("cannot parse XML: {}.", ex.getMessage());
+			System.exit(1);
+			return;
+		} finally {
+			this.parseMetrics.addBytesRead(new File(path).length());
+			this.parseMetrics.finish();
+		}
+		
+		for (int i = 0; i < previous.size(); i++) {
+			if (!seen[i] && previous.isLive(i)) {
+				affectedYears.add(previous.getYear(i));
+				counts[2]++;
+			}
+		}
+		
+		IntHashSet disambiguations = new IntHashSet();
+		for (String name: this.reader.getDisambiguations()) {
+			int id = this.authors.get(name);
+			if (id >= 0) {
+				disambiguations.add(id);
+			}
+		}
+		current.setDisambiguations(disambiguations);
+		
+		IntHashSet flipped = new IntHashSet();
+		disambiguations.forEach(id -> {
+			if (!previous.getDisambiguations().contains(id)) {
+				flipped.add(id);
+			}
+		});
+		previous.getDisambiguations().forEach(id -> {
+			if (!disambiguations.contains(id)) {
+				flipped.add(id);
 			}
+		});
+		
+		this.logger.info("{} added, {} changed, {} removed publications, {} disambiguation changes.",
+				counts[0], counts[1], counts[2], flipped.size());
+		
+		if (!flipped.isEmpty()) {
+			for (int i = 0; i < current.size(); i++) {
+				if (current.isLive(i) && !affectedYears.contains(current.getYear(i))) {
+					for (int id: current.getAuthors(i)) {
+						if (flipped.contains(id)) {
+							affectedYears.add(current.getYear(i));
+							break;
+						}
+					}
+				}
+			}
+		}
+		
+		String policy = this.largeGroupPolicy.getFingerprint();
+		current.setPolicy(policy);
+		
+		if (policy == null || !policy.equals(previous.getPolicy())) {
+			this.logger.info("Large group policy is {}, was {}: rebuilding every year.", policy, previous.getPolicy());
+			for (int i = 0; i < previous.size(); i++) {
+				affectedYears.add(previous.getYear(i));
+			}
+			for (int i = 0; i < current.size(); i++) {
+				affectedYears.add(current.getYear(i));
+			}
+		}
+		
+		// Rebuild the affected years from the records of the new release
+		this.yearlyPublications = new HashMap<Integer, List<int[]>>();
+		for (int i = 0; i < current.size(); i++) {
+			if (current.isLive(i) && affectedYears.contains(current.getYear(i))) {
+				this.addFiltered(current.getYear(i), current.getAuthors(i), disambiguations);
+			}
+		}
+		
+		this.logger.info("Rebuilding {} years.", affectedYears.size());
+		this.generateTEG();
+		
+		StageMetrics stage = this.metrics.stage("shards");
+		
+		try {
 			
-			for (String author: graph.keySet()) {
-				graph.get(author).remove(author);
+			for (int year: affectedYears.toArray()) {
+				
+				File shard = new File(dir, year + ".teg.bin");
+				SnapshotGraph graph = this.teg.get(year);
+				
+				if (graph == null || graph.getNumEdges() == 0) {
+					shard.delete();
+					continue;
+				}
+				
+				try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(shard.getPath(), 3)) {
+					for (int source: graph.getVertices()) {
+						for (int target: graph.getNeighbors(source)) {
+							writer.write(source, target, year);
+						}
+					}
+				}
+				
+				stage.addRecords(graph.getNumEdges());
+				stage.addBytesWritten(shard.length());
 			}
 			
+			// Written last: if a run fails before this point, the next run diffs
+			// against the old index again and rewrites the same years
+			current.write(indexFile);
+			
+		} catch (IOException e) {
+			this.logger.error(e.getMessage());
+			System.exit(1);
 		}
 		
-		this.logger.info("-generateTEG()");
-
+		stage.finish();
+		
+		this.assembleShards(dir, outputPath);
+		
+		this.logger.info("-update({})", path);
 	}
 	
-	public void writeGraphToFile(String path) {
+	private void addFiltered(int year, int[] coauthors, IntHashSet disambiguations) {
 		
-		this.logger.info("+writeGraphToFile()");
+		int[] kept = new int[coauthors.length];
+		int n = 0;
+		for (int author: coauthors) {
+			if (!disambiguations.contains(author)) {
+				kept[n++] = author;
+			}
+		}
+		
+		if (n == 0) {
+			return;
+		}
+		
+		List<int[]> publications = this.yearlyPublications.get(year);
+		if (publications == null) {
+			publications = new ArrayList<int[]>();
+			this.yearlyPublications.put(year, publications);
+		}
+		publications.add(n == kept.length ? kept : Arrays.copyOf(kept, n));
+	}
+	
+	/**
+	 * Concatenates the year shards in ascending year order into the normalized
+	 * TEG, renumbering authors by first appearance and years to 0..T-1, with
+	 * the same mapping files as {@link NormalizedTegWriter}.
+	 */
+	private void assembleShards(File dir, String outputPath) {
+		
+		this.logger.info("+assembleShards({})", outputPath);
+		
+		StageMetrics stage = this.metrics.stage("write");
+		
+		File[] shards = dir.listFiles((d, name) -> name.matches("\\d+\\.teg\\.bin"));
+		int[] years = new int[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			years[i] = Integer.parseInt(shards[i].getName().substring(0, shards[i].getName().indexOf('.')));
+		}
+		Arrays.sort(years);
+		
+		int[] newIds = new int[this.authors.size()];
+		Arrays.fill(newIds, -1);
+		int numVertices = 0;
 		
 		try {
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-					new FileOutputStream(path), "utf-8"));
 			
-			for (int year: this.teg.keySet()) {
+			// Numbered and ordered as in NormalizedTegWriter, with the same snapshot index for binary outputs
+			try (TemporalEdgeWriter writer = NormalizedTegWriter.open(outputPath)) {
 				
-				Map<String, Set<String>> graph = teg.get(year);
-
-				for (String source: graph.keySet()) {
-					for (String target: graph.get(source)) {
-						String line = source + "," + target + "," + year;
-						writer.write(line);
-						writer.newLine();
+				long[] edges = new long[16];
+				
+				for (int t = 0; t < years.length; t++) {
+					
+					File shard = new File(dir, years[t] + ".teg.bin");
+					int n = 0;
+					
+					try (TemporalEdgeReader reader = TemporalEdgeReader.open(shard.getPath())) {
+						while (reader.next()) {
+							
+							int source = reader.getSource();
+							int target = reader.getTarget();
+							
+							if (newIds[source] < 0) {
+								newIds[source] = numVertices++;
+							}
+							if (newIds[target] < 0) {
+								newIds[target] = numVertices++;
+							}
+							
+							if (n == edges.length) {
+								edges = Arrays.copyOf(edges, n * 2);
+							}
+							edges[n++] = NormalizedTegWriter.edge(newIds[source], newIds[target]);
+						}
 					}
+					
+					NormalizedTegWriter.writeSnapshot(edges, n, t, writer);
+					stage.addRecords(n);
+					stage.addBytesRead(shard.length());
 				}
-				
 			}
 			
-			writer.close();
+			this.authors.writeToFile(outputPath + ".vertices", newIds);
+			
+			try (BufferedWriter mappingWriter = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(outputPath + ".timestamps"), "utf-8"))) {
+				
+				for (int t = 0; t < years.length; t++) {
+					mappingWriter.write(t + "," + years[t]);
+					mappingWriter.newLine();
+				}
+				
+			}
 			
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
 		} catch (IOException e) {
-			e.printStackTrace();
+			this.logger.error("Cannot assemble {}: {}.", outputPath, e.getMessage());
+			System.exit(1);
 		}
 		
-		this.logger.info("-writeGraphToFile()");
-			
+		stage.addBytesWritten(new File(outputPath).length());
+		stage.finish();
+		
+		this.logger.info("Number of vertices is {}, snapshots {}.", numVertices, years.length);
+		this.logger.info("-assembleShards({})", outputPath);
 	}
 
     public static void main(String[] args) {
     	
     	DblpPreprocessor parser = new DblpPreprocessor();
     	
-    	String path = "raw/dblp-2018-01-01.xml";
+    	String path = "raw/dblp-2018-01-01.xml.gz";
+    	parser.getMetrics().startReporting(60);
     	parser.getParser(path);
     	parser.analyzeAuthors();
     	
     	parser.getYearlyPublications();
     	parser.generateTEG();
     	
-    	parser.writeGraphToFile(path + ".teg");
+    	parser.writeGraphToFile(InputFiles.stripCompression(path) + ".teg.sim");
+    	
+    	// Or, for successive releases, patch the shards of the previous one:
+    	// parser.update(path, "raw/dblp-incremental", InputFiles.stripCompression(path) + ".teg.sim");
+    	
+    	try {
+    		parser.getMetrics().writeSummary(InputFiles.stripCompression(path) + ".metrics.json");
+    	} catch (IOException e) {
+    		e.printStackTrace();
+    	}
     }
     
 }
@@ -0,0 +1,20 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.List;
+
+/**
+ * Receives the publication records streamed by {@link DblpXmlReader}.
+ *
+ */
+public interface DblpRecordHandler {
+
+	/**
+	 * Called once per publication record, in document order.
+	 *
+	 * @param key the dblp key of the record, e.g. "journals/tkde/PengLX18"
+	 * @param year the value of the year field
+	 * @param authors the author (or editor) names; the list is reused by the reader
+	 */
+	void publication(String key, int year, List<String> authors);
+
+}
@@ -0,0 +1,225 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single-pass StAX reader for the dblp XML dump.
+ *
+ * Publication records are handed to a {@link DblpRecordHandler} as soon as
+ * their end tag is read, so nothing but the current record is kept in memory.
+ * The names listed on disambiguation homepages are collected on the way and
+ * can be queried once the document has been read.
+ *
+ */
+public class DblpXmlReader {
+
+	private static final Set<String> PUBLICATION_TYPES = new HashSet<String>(Arrays.asList(
+			"article", "inproceedings", "proceedings", "book", "incollection", "phdthesis", "mastersthesis", "www"));
+
+	private static final int RECORD_DEPTH = 2;
+	private static final int FIELD_DEPTH = 3;
+
+	private final String dtdPath;
+
+	private Set<String> disambiguations;
+
+	private int numRecords;
+	private int numSkipped;
+
+	final private Logger logger = LoggerFactory.getLogger(DblpXmlReader.class);
+
+	/**
+	 * @param dtdPath the dtd to use when the dump does not have a dblp.dtd next to it
+	 */
+	public DblpXmlReader(String dtdPath) {
+		this.dtdPath = dtdPath;
+	}
+
+	/**
+	 * Reads an uncompressed or gzipped (".xml.gz") dump.
+	 */
+	public void read(String path, DblpRecordHandler handler) throws IOException, XMLStreamException {
+
+		try (InputStream in = InputFiles.open(path)) {
+			this.read(in, new File(path).getAbsoluteFile().getParentFile(), handler);
+		}
+
+	}
+
+	public void read(InputStream in, final File dtdDirectory, DblpRecordHandler handler) throws XMLStreamException {
+
+		this.logger.debug("+read()");
+
+		this.disambiguations = new HashSet<String>();
+		this.numRecords = 0;
+		this.numSkipped = 0;
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+		factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+		factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		factory.setXMLResolver((publicId, systemId, baseUri, namespace) -> this.resolveDtd(systemId, dtdDirectory));
+
+		XMLStreamReader reader = factory.createXMLStreamReader(in);
+
+		List<String> authors = new ArrayList<String>();
+		List<String> editors = new ArrayList<String>();
+		StringBuilder text = new StringBuilder();
+
+		int depth = 0;
+		String key = null;
+		String field = null;
+		int year = 0;
+		boolean publication = false;
+		boolean homepage = false;
+		boolean disambiguation = false;
+
+		while (reader.hasNext()) {
+
+			switch (reader.next()) {
+
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+
+				if (depth == RECORD_DEPTH) {
+					String type = reader.getLocalName();
+					key = reader.getAttributeValue(null, "key");
+					homepage = type.equals("www") && key != null && key.startsWith("homepages/");
+					publication = !homepage && PUBLICATION_TYPES.contains(type);
+					disambiguation = false;
+					year = 0;
+					authors.clear();
+					editors.clear();
+				} else if (depth == FIELD_DEPTH) {
+					field = reader.getLocalName();
+					text.setLength(0);
+
+					if (homepage && field.equals("note") && "disambiguation".equals(reader.getAttributeValue(null, "type"))) {
+						disambiguation = true;
+					}
+				}
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				if (depth >= FIELD_DEPTH && field != null) {
+					text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+
+				if (depth == FIELD_DEPTH) {
+
+					if (field.equals("author")) {
+						authors.add(text.toString());
+					} else if (field.equals("editor")) {
+						editors.add(text.toString());
+					} else if (field.equals("year")) {
+						year = this.parseYear(text);
+					} else if (homepage && field.equals("title") && text.toString().equals("Disambiguation Page")) {
+						disambiguation = true;
+					}
+
+					field = null;
+
+				} else if (depth == RECORD_DEPTH) {
+
+					if (homepage && disambiguation) {
+						this.disambiguations.addAll(authors);
+					} else if (publication) {
+						List<String> names = authors.isEmpty() ? editors : authors;
+
+						if (year > 0 && !names.isEmpty()) {
+							handler.publication(key, year, names);
+							this.numRecords++;
+						} else {
+							this.numSkipped++;
+						}
+					}
+
+				}
+
+				depth--;
+				break;
+
+			default:
+				break;
+			}
+
+		}
+
+		reader.close();
+
+		this.logger.debug("Number of publication records is {}, skipped {} without year or authors.", this.numRecords, this.numSkipped);
+		this.logger.debug("Number of disambiguation names is {}.", this.disambiguations.size());
+		this.logger.debug("-read()");
+
+	}
+
+	private int parseYear(CharSequence text) {
+
+		int year = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= '0' && c <= '9') {
+				year = year * 10 + (c - '0');
+			} else if (!Character.isWhitespace(c)) {
+				return 0;
+			}
+		}
+		return year;
+	}
+
+	private InputStream resolveDtd(String systemId, File dtdDirectory) throws XMLStreamException {
+
+		File dtd = new File(dtdDirectory, new File(systemId).getName());
+		if (!dtd.exists()) {
+			dtd = new File(this.dtdPath);
+		}
+
+		this.logger.debug("Resolving {} to {}.", systemId, dtd.getPath());
+
+		try {
+			return new BufferedInputStream(new FileInputStream(dtd));
+		} catch (FileNotFoundException e) {
+			throw new XMLStreamException("Cannot find dtd " + dtd.getPath(), e);
+		}
+
+	}
+
+	/**
+	 * @return the names listed on disambiguation homepages of the last document read
+	 */
+	public Set<String> getDisambiguations() {
+		return this.disambiguations;
+	}
+
+	public int getNumRecords() {
+		return this.numRecords;
+	}
+
+	public int getNumSkipped() {
+		return this.numSkipped;
+	}
+
+}
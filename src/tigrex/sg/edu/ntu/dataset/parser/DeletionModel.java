@@ -0,0 +1,74 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.SplittableRandom;
+
+/**
+ * Decides when an inserted edge is deleted.
+ * 
+ * An edge with start time s and end time e is alive in snapshots s to e;
+ * an end time of numSnapshots - 1 means it is never deleted.
+ *
+ */
+public interface DeletionModel {
+	
+	/**
+	 * Deletion generators are seeded per block of this many consecutive source
+	 * vertices, in block order, so results do not depend on how blocks are
+	 * scheduled.
+	 */
+	int VERTEX_BLOCK_SIZE = 1 << 12;
+	
+	/**
+	 * @return an end time in [startTime, numSnapshots)
+	 */
+	int endTime(int startTime, int numSnapshots, SplittableRandom rand);
+	
+	/**
+	 * End times uniform in [startTime, numSnapshots).
+	 */
+	static DeletionModel uniform() {
+		return (startTime, numSnapshots, rand) -> startTime + rand.nextInt(numSnapshots - startTime);
+	}
+	
+	/**
+	 * Exponentially distributed lifetimes, truncated at the last snapshot.
+	 * 
+	 * @param meanLifetime the mean number of snapshots an edge survives after its insertion
+	 */
+	static DeletionModel exponential(final double meanLifetime) {
+		
+		if (!(meanLifetime > 0)) {
+			throw new IllegalArgumentException("Mean lifetime is " + meanLifetime + ", expected > 0.");
+		}
+		
+		return (startTime, numSnapshots, rand) -> {
+			double lifetime = -meanLifetime * Math.log(1 - rand.nextDouble());
+			return (int) Math.min(numSnapshots - 1L, startTime + (long) lifetime);
+		};
+	}
+	
+	/**
+	 * After every snapshot, the given fraction of the edges alive in it is
+	 * deleted, i.e. lifetimes are geometric with that success probability.
+	 * 
+	 * @param fraction the share of alive edges deleted per snapshot, in (0, 1]
+	 */
+	static DeletionModel fixedFraction(final double fraction) {
+		
+		if (!(fraction > 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("Fraction is " + fraction + ", expected in (0, 1].");
+		}
+		
+		final double logSurvival = Math.log(1 - fraction);
+		
+		return (startTime, numSnapshots, rand) -> {
+			if (fraction == 1) {
+				return startTime;
+			}
+			// Number of snapshots survived before the deleting one
+			double survived = Math.floor(Math.log(1 - rand.nextDouble()) / logSurvival);
+			return (int) Math.min(numSnapshots - 1L, startTime + (long) Math.min(survived, Integer.MAX_VALUE));
+		};
+	}
+
+}
@@ -0,0 +1,99 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+
+/**
+ * A fixed-capacity batch of temporal edges in primitive columns, the unit
+ * passed between {@link Pipeline} stages.
+ *
+ */
+public class EdgeBatch {
+	
+	public static final int DEFAULT_CAPACITY = 1 << 12;
+	
+	private final int columns;
+	
+	private final int[] sources;
+	private final int[] targets;
+	private final int[] startTimes;
+	private final int[] endTimes;
+	
+	private int size;
+	
+	/**
+	 * @param columns 3 for (source, target, timestamp), 4 with an end time
+	 */
+	public EdgeBatch(int columns, int capacity) {
+		
+		this.columns = columns;
+		
+		this.sources = new int[capacity];
+		this.targets = new int[capacity];
+		this.startTimes = new int[capacity];
+		this.endTimes = columns == 4 ? new int[capacity] : null;
+	}
+	
+	public void add(int source, int target, int timestamp) {
+		this.sources[this.size] = source;
+		this.targets[this.size] = target;
+		this.startTimes[this.size] = timestamp;
+		this.size++;
+	}
+	
+	public void add(int source, int target, int startTime, int endTime) {
+		this.sources[this.size] = source;
+		this.targets[this.size] = target;
+		this.startTimes[this.size] = startTime;
+		this.endTimes[this.size] = endTime;
+		this.size++;
+	}
+	
+	public int getColumns() {
+		return this.columns;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	public boolean isFull() {
+		return this.size == this.sources.length;
+	}
+	
+	public int getSource(int i) {
+		return this.sources[i];
+	}
+	
+	public int getTarget(int i) {
+		return this.targets[i];
+	}
+	
+	public int getStartTime(int i) {
+		return this.startTimes[i];
+	}
+	
+	/**
+	 * @return the end time, or -1 for 3-column batches
+	 */
+	public int getEndTime(int i) {
+		return this.endTimes == null ? -1 : this.endTimes[i];
+	}
+	
+	public void writeTo(TemporalEdgeWriter writer) throws IOException {
+		
+		if (this.columns == 3) {
+			for (int i = 0; i < this.size; i++) {
+				writer.write(this.sources[i], this.targets[i], this.startTimes[i]);
+			}
+		} else {
+			for (int i = 0; i < this.size; i++) {
+				writer.write(this.sources[i], this.targets[i], this.startTimes[i], this.endTimes[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Lets the existing writers (growth conversion, clique expansion,
+ * renumbering, deletions) feed a {@link Pipeline}: edges are collected into
+ * {@link EdgeBatch}es that are emitted when full and on {@link #close()}.
+ *
+ */
+public class EdgeBatchWriter implements TemporalEdgeWriter {
+	
+	private final Pipeline.Emitter<EdgeBatch> out;
+	private final int columns;
+	
+	private EdgeBatch batch;
+	
+	public EdgeBatchWriter(Pipeline.Emitter<EdgeBatch> out, int columns) {
+		this.out = out;
+		this.columns = columns;
+		this.batch = new EdgeBatch(columns, EdgeBatch.DEFAULT_CAPACITY);
+	}
+	
+	@Override
+	public void write(int source, int target, int timestamp) throws IOException {
+		
+		if (this.columns == 4) {
+			this.batch.add(source, target, timestamp, -1);
+		} else {
+			this.batch.add(source, target, timestamp);
+		}
+		
+		if (this.batch.isFull()) {
+			this.flush();
+		}
+	}
+	
+	@Override
+	public void write(int source, int target, int startTime, int endTime) throws IOException {
+		
+		if (this.columns == 3) {
+			throw new IllegalStateException("Writer expects 3 columns.");
+		}
+		
+		this.batch.add(source, target, startTime, endTime);
+		
+		if (this.batch.isFull()) {
+			this.flush();
+		}
+	}
+	
+	private void flush() throws IOException {
+		
+		try {
+			this.out.emit(this.batch);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while emitting a batch.");
+		}
+		
+		this.batch = new EdgeBatch(this.columns, EdgeBatch.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Emits the last, partial batch.
+	 */
+	@Override
+	public void close() throws IOException {
+		
+		if (!this.batch.isEmpty()) {
+			this.flush();
+		}
+	}
+
+}
@@ -0,0 +1,438 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sorts and deduplicates temporal edges that do not fit in memory.
+ * 
+ * Edges are collected in a buffer sized by the memory budget. Each full
+ * buffer is sorted by (source, target, start time[, end time]), stripped of
+ * duplicates and spilled as a binary run file to the scratch directory.
+ * {@link #writeTo(TemporalEdgeWriter)} then k-way merges the runs, dropping
+ * the duplicates found across runs. Inputs that fit in one buffer never touch
+ * the disk.
+ *
+ */
+public class ExternalEdgeSorter implements TemporalEdgeWriter {
+	
+	public static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+	
+	// Runs merged at once; more runs are first merged into larger runs
+	private static final int MAX_FAN_IN = 128;
+	
+	private static final int MIN_RECORDS = 1 << 10;
+	
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+	
+	private final int columns;
+	private final File scratchDirectory;
+	
+	private int[] buffer;
+	private final int capacity;
+	private int numBuffered;
+	
+	private final int[] pivot;
+	
+	private int distinctColumns;
+	
+	private final List<File> runs;
+	
+	private long numAdded;
+	
+	final private Logger logger = LoggerFactory.getLogger(ExternalEdgeSorter.class);
+	
+	/**
+	 * @param columns 3 for (source, target, timestamp), 4 with an end time
+	 * @param memoryBudget the bytes to use for the in-memory buffer
+	 * @param scratchDirectory where runs are spilled, or null for the default temporary directory
+	 */
+	public ExternalEdgeSorter(int columns, long memoryBudget, File scratchDirectory) {
+		
+		if (columns != 3 && columns != 4) {
+			throw new IllegalArgumentException("Unsupported number of columns " + columns + ".");
+		}
+		
+		this.columns = columns;
+		this.scratchDirectory = scratchDirectory;
+		
+		long records = Math.min(memoryBudget / 4, Integer.MAX_VALUE - 8) / columns;
+		this.capacity = (int) Math.max(MIN_RECORDS, records);
+		this.buffer = new int[Math.min(this.capacity, MIN_RECORDS) * columns];
+		this.pivot = new int[columns];
+		
+		this.distinctColumns = columns;
+		this.runs = new ArrayList<File>();
+	}
+	
+	/**
+	 * Edges that agree on their first {@code distinctColumns} columns are
+	 * duplicates, of which only the first in sort order is kept. By default
+	 * only identical edges are duplicates; 2 keeps the earliest edge of every
+	 * (source, target) pair.
+	 */
+	public void setDistinctColumns(int distinctColumns) {
+		
+		if (distinctColumns < 1 || distinctColumns > this.columns) {
+			throw new IllegalArgumentException("Distinct columns must be between 1 and " + this.columns + ".");
+		}
+		
+		this.distinctColumns = distinctColumns;
+	}
+	
+	@Override
+	public void write(int source, int target, int timestamp) throws IOException {
+		
+		if (this.columns != 3) {
+			throw new IllegalStateException("Sorter expects " + this.columns + " columns.");
+		}
+		
+		if (this.numBuffered * this.columns == this.buffer.length) {
+			this.grow();
+		}
+		
+		int i = this.numBuffered++ * 3;
+		this.buffer[i] = source;
+		this.buffer[i + 1] = target;
+		this.buffer[i + 2] = timestamp;
+		this.numAdded++;
+	}
+	
+	@Override
+	public void write(int source, int target, int startTime, int endTime) throws IOException {
+		
+		if (this.columns != 4) {
+			throw new IllegalStateException("Sorter expects " + this.columns + " columns.");
+		}
+		
+		if (this.numBuffered * this.columns == this.buffer.length) {
+			this.grow();
+		}
+		
+		int i = this.numBuffered++ * 4;
+		this.buffer[i] = source;
+		this.buffer[i + 1] = target;
+		this.buffer[i + 2] = startTime;
+		this.buffer[i + 3] = endTime;
+		this.numAdded++;
+	}
+	
+	/**
+	 * Doubles the buffer up to the memory budget, then spills it, so that small
+	 * inputs do not allocate the whole budget.
+	 */
+	private void grow() throws IOException {
+		
+		if (this.numBuffered < this.capacity) {
+			long records = Math.min((long) this.numBuffered * 2, this.capacity);
+			this.buffer = Arrays.copyOf(this.buffer, (int) records * this.columns);
+		} else {
+			this.spill();
+		}
+	}
+	
+	/**
+	 * Sorts and deduplicates the buffer, leaving the distinct records at its front.
+	 */
+	private void sortBuffer() {
+		
+		this.sort(0, this.numBuffered);
+		
+		if (this.numBuffered == 0) {
+			return;
+		}
+		
+		int n = 1;
+		for (int i = 1; i < this.numBuffered; i++) {
+			if (this.compare(i, n - 1, this.distinctColumns) != 0) {
+				if (i != n) {
+					System.arraycopy(this.buffer, i * this.columns, this.buffer, n * this.columns, this.columns);
+				}
+				n++;
+			}
+		}
+		this.numBuffered = n;
+	}
+	
+	private void spill() throws IOException {
+		
+		this.sortBuffer();
+		
+		File run = File.createTempFile("edges", ".run" + BINARY_SUFFIX, this.scratchDirectory);
+		run.deleteOnExit();
+		this.runs.add(run);
+		
+		try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(run.getPath(), this.columns)) {
+			for (int i = 0; i < this.numBuffered; i++) {
+				this.writeRecord(writer, this.buffer, i * this.columns);
+			}
+		}
+		
+		this.logger.debug("Spilled run {} with {} edges.", this.runs.size(), this.numBuffered);
+		
+		this.numBuffered = 0;
+	}
+	
+	/**
+	 * Writes all edges added so far in sorted order without duplicates.
+	 * 
+	 * @return the number of edges written
+	 */
+	public long writeTo(TemporalEdgeWriter writer) throws IOException {
+		
+		this.logger.info("+writeTo() with {} edges", this.numAdded);
+		
+		long numWritten = 0;
+		
+		if (this.runs.isEmpty()) {
+			
+			this.sortBuffer();
+			for (int i = 0; i < this.numBuffered; i++) {
+				this.writeRecord(writer, this.buffer, i * this.columns);
+			}
+			numWritten = this.numBuffered;
+			
+		} else {
+			
+			if (this.numBuffered > 0) {
+				this.spill();
+			}
+			
+			while (this.runs.size() > MAX_FAN_IN) {
+				
+				List<File> group = new ArrayList<File>(this.runs.subList(0, MAX_FAN_IN));
+				this.runs.subList(0, MAX_FAN_IN).clear();
+				
+				File run = File.createTempFile("edges", ".run" + BINARY_SUFFIX, this.scratchDirectory);
+				run.deleteOnExit();
+				this.runs.add(run);
+				
+				try (TemporalEdgeWriter runWriter = TemporalEdgeWriter.open(run.getPath(), this.columns)) {
+					this.merge(group, runWriter);
+				}
+				
+				for (File file: group) {
+					file.delete();
+				}
+			}
+			
+			numWritten = this.merge(this.runs, writer);
+		}
+		
+		this.logger.info("Number of edges written is {}, duplicates {}.", numWritten, this.numAdded - numWritten);
+		this.logger.info("-writeTo()");
+		
+		return numWritten;
+	}
+	
+	private static class Run {
+		
+		final TemporalEdgeReader reader;
+		final int[] record;
+		
+		Run(TemporalEdgeReader reader, int columns) {
+			this.reader = reader;
+			this.record = new int[columns];
+		}
+		
+		boolean next() throws IOException {
+			
+			if (!this.reader.next()) {
+				return false;
+			}
+			
+			this.record[0] = this.reader.getSource();
+			this.record[1] = this.reader.getTarget();
+			this.record[2] = this.reader.getStartTime();
+			if (this.record.length > 3) {
+				this.record[3] = this.reader.getEndTime();
+			}
+			
+			return true;
+		}
+	}
+	
+	private long merge(List<File> files, TemporalEdgeWriter writer) throws IOException {
+		
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(files.size(), 
+				(a, b) -> compare(a.record, 0, b.record, 0, this.columns));
+		List<Run> open = new ArrayList<Run>(files.size());
+		
+		int[] last = new int[this.columns];
+		boolean first = true;
+		long numWritten = 0;
+		
+		try {
+			
+			for (File file: files) {
+				Run run = new Run(TemporalEdgeReader.open(file.getPath()), this.columns);
+				open.add(run);
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+			
+			while (!queue.isEmpty()) {
+				
+				Run run = queue.poll();
+				
+				if (first || compare(run.record, 0, last, 0, this.distinctColumns) != 0) {
+					this.writeRecord(writer, run.record, 0);
+					System.arraycopy(run.record, 0, last, 0, this.columns);
+					first = false;
+					numWritten++;
+				}
+				
+				if (run.next()) {
+					queue.add(run);
+				}
+			}
+			
+		} finally {
+			for (Run run: open) {
+				run.reader.close();
+			}
+		}
+		
+		return numWritten;
+	}
+	
+	private void writeRecord(TemporalEdgeWriter writer, int[] records, int i) throws IOException {
+		
+		if (this.columns == 3) {
+			writer.write(records[i], records[i + 1], records[i + 2]);
+		} else {
+			writer.write(records[i], records[i + 1], records[i + 2], records[i + 3]);
+		}
+	}
+	
+	private static int compare(int[] a, int i, int[] b, int j, int length) {
+		
+		for (int c = 0; c < length; c++) {
+			if (a[i + c] != b[j + c]) {
+				return a[i + c] < b[j + c] ? -1 : 1;
+			}
+		}
+		
+		return 0;
+	}
+	
+	private int compare(int a, int b, int length) {
+		return compare(this.buffer, a * this.columns, this.buffer, b * this.columns, length);
+	}
+	
+	private void swap(int a, int b) {
+		
+		int i = a * this.columns;
+		int j = b * this.columns;
+		
+		for (int c = 0; c < this.columns; c++) {
+			int tmp = this.buffer[i + c];
+			this.buffer[i + c] = this.buffer[j + c];
+			this.buffer[j + c] = tmp;
+		}
+	}
+	
+	/**
+	 * Three-way quicksort of the records in [from, to), which keeps runs of
+	 * duplicates cheap. Only the smaller side is recursed into, bounding the depth.
+	 */
+	private void sort(int from, int to) {
+		
+		while (to - from > INSERTION_SORT_THRESHOLD) {
+			
+			// Median of three as pivot
+			int mid = (from + to) >>> 1;
+			int last = to - 1;
+			if (this.compare(mid, from, this.columns) < 0) {
+				this.swap(mid, from);
+			}
+			if (this.compare(last, from, this.columns) < 0) {
+				this.swap(last, from);
+			}
+			if (this.compare(last, mid, this.columns) < 0) {
+				this.swap(last, mid);
+			}
+			System.arraycopy(this.buffer, mid * this.columns, this.pivot, 0, this.columns);
+			
+			int lt = from;
+			int i = from;
+			int gt = to;
+			while (i < gt) {
+				int c = compare(this.buffer, i * this.columns, this.pivot, 0, this.columns);
+				if (c < 0) {
+					this.swap(lt++, i++);
+				} else if (c > 0) {
+					this.swap(i, --gt);
+				} else {
+					i++;
+				}
+			}
+			
+			if (lt - from < to - gt) {
+				this.sort(from, lt);
+				from = gt;
+			} else {
+				this.sort(gt, to);
+				to = lt;
+			}
+		}
+		
+		for (int i = from + 1; i < to; i++) {
+			for (int j = i; j > from && this.compare(j, j - 1, this.columns) < 0; j--) {
+				this.swap(j, j - 1);
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the spilled runs.
+	 */
+	@Override
+	public void close() {
+		
+		for (File run: this.runs) {
+			run.delete();
+		}
+		this.runs.clear();
+		this.numBuffered = 0;
+	}
+	
+	/**
+	 * Sorts and deduplicates a temporal edge file, text or binary.
+	 * 
+	 * @return the number of edges written
+	 */
+	public static long sort(String path, String outputPath, long memoryBudget, File scratchDirectory) throws IOException {
+		
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			
+			// Text files only know their number of columns once a line has been read
+			boolean more = reader.next();
+			int columns = reader.getColumns() > 0 ? reader.getColumns() : 3;
+			
+			try (ExternalEdgeSorter sorter = new ExternalEdgeSorter(columns, memoryBudget, scratchDirectory)) {
+				
+				for (; more; more = reader.next()) {
+					if (columns == 3) {
+						sorter.write(reader.getSource(), reader.getTarget(), reader.getStartTime());
+					} else {
+						sorter.write(reader.getSource(), reader.getTarget(), reader.getStartTime(), reader.getEndTime());
+					}
+				}
+				
+				try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(outputPath, columns)) {
+					return sorter.writeTo(writer);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,310 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts whitespace-separated growth files ("source target date ...") into
+ * temporal edges, with "YYYY-MM-DD" dates turned into YYYYMMDD timestamps.
+ * 
+ * Lines are independent, so large files are split at line boundaries into
+ * chunks that are converted concurrently, each into its own shard. The shards
+ * are then appended to the output in input order, so the result is the same
+ * as a sequential conversion.
+ *
+ */
+public class GrowthFileConverter {
+	
+	/**
+	 * Files are not split into chunks smaller than this.
+	 */
+	private static final long MIN_CHUNK_SIZE = 16L << 20;
+	
+	// Lines converted between two updates of the shared record count
+	private static final int METRICS_BATCH = 1 << 16;
+	
+	private final int numFields;
+	private final boolean symmetric;
+	private final boolean skipComments;
+	
+	private StageMetrics metrics = new StageMetrics("convert");
+	
+	final private Logger logger = LoggerFactory.getLogger(GrowthFileConverter.class);
+	
+	/**
+	 * @param numFields the number of fields every line must have
+	 * @param symmetric whether to also write the reverse of every edge
+	 * @param skipComments whether to skip lines starting with '%'
+	 */
+	public GrowthFileConverter(int numFields, boolean symmetric, boolean skipComments) {
+		this.numFields = numFields;
+		this.symmetric = symmetric;
+		this.skipComments = skipComments;
+	}
+	
+	/**
+	 * @param metrics receives the converted lines and the bytes read and written
+	 */
+	public void setMetrics(StageMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	public void convert(String path, String outputPath) throws IOException {
+		this.convert(path, outputPath, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Deletes the partial output if the conversion fails.
+	 * 
+	 * @param parallelism the number of chunks converted at the same time
+	 */
+	public void convert(String path, String outputPath, int parallelism) throws IOException {
+		
+		boolean converted = false;
+		try {
+			this.convertChunks(path, outputPath, parallelism);
+			converted = true;
+		} finally {
+			if (!converted) {
+				new File(outputPath).delete();
+				new File(outputPath + BlockGzipTemporalEdgeWriter.INDEX_SUFFIX).delete();
+			}
+		}
+	}
+	
+	private void convertChunks(String path, String outputPath, int parallelism) throws IOException {
+		
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			
+			long[] boundaries = this.split(channel, parallelism);
+			int numChunks = boundaries.length - 1;
+			
+			this.logger.debug("Converting {} in {} chunks.", path, numChunks);
+			
+			if (numChunks == 1) {
+				try (MappedLineScanner scanner = new MappedLineScanner(channel, 0, boundaries[1]);
+						TemporalEdgeWriter writer = TemporalEdgeWriter.open(outputPath, 3)) {
+					
+					long count = this.convert(scanner, writer);
+					this.metrics.addBytesRead(boundaries[1]);
+					
+					this.logger.debug("Total number of lines is {}.", count);
+				}
+				this.metrics.addBytesWritten(new File(outputPath).length());
+				return;
+			}
+			
+			List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+			for (int i = 0; i < numChunks; i++) {
+				final long start = boundaries[i];
+				final long end = boundaries[i + 1];
+				final String shard = shardPath(outputPath, i);
+				
+				tasks.add(() -> {
+					try (MappedLineScanner scanner = new MappedLineScanner(channel, start, end);
+							TemporalEdgeWriter writer = TemporalEdgeWriter.open(shard, 3)) {
+						long count = this.convert(scanner, writer);
+						this.metrics.addBytesRead(end - start);
+						return count;
+					}
+				});
+			}
+			
+			long count = 0;
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, numChunks));
+			try {
+				
+				try {
+					for (Future<Long> result: executor.invokeAll(tasks)) {
+						count += result.get();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while converting " + path + ".", e);
+				} catch (ExecutionException e) {
+					throw new IOException("Conversion of a chunk of " + path + " failed.", e.getCause());
+				} finally {
+					executor.shutdown();
+				}
+				
+				this.mergeShards(outputPath, numChunks);
+				
+			} finally {
+				for (int i = 0; i < numChunks; i++) {
+					new File(shardPath(outputPath, i)).delete();
+				}
+			}
+			this.metrics.addBytesWritten(new File(outputPath).length());
+			
+			this.logger.debug("Total number of lines is {}.", count);
+		}
+	}
+	
+	private static String shardPath(String outputPath, int chunk) {
+		return outputPath + ".part" + chunk;
+	}
+	
+	/**
+	 * Splits the file into at most {@code parallelism} chunks that end right after a newline.
+	 * 
+	 * @return the chunk boundaries, starting with 0 and ending with the file size
+	 */
+	private long[] split(FileChannel channel, int parallelism) throws IOException {
+		
+		long size = channel.size();
+		int numChunks = (int) Math.max(1, Math.min(parallelism, size / MIN_CHUNK_SIZE));
+		
+		List<Long> boundaries = new ArrayList<Long>();
+		boundaries.add(0L);
+		
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+		
+		for (int i = 1; i < numChunks; i++) {
+			long offset = Math.max(size / numChunks * i, boundaries.get(boundaries.size() - 1));
+			
+			// Move to just after the next newline
+			boolean found = false;
+			while (!found && offset < size) {
+				buffer.clear();
+				int read = channel.read(buffer, offset);
+				for (int j = 0; j < read; j++) {
+					if (buffer.get(j) == '\n') {
+						offset += j + 1;
+						found = true;
+						break;
+					}
+				}
+				if (!found) {
+					offset += read;
+				}
+			}
+			
+			if (offset < size && offset > boundaries.get(boundaries.size() - 1)) {
+				boundaries.add(offset);
+			}
+		}
+		
+		boundaries.add(size);
+		
+		long[] result = new long[boundaries.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = boundaries.get(i);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Appends the shards to the output in chunk order.
+	 * Text shards are concatenated as they are; binary and compressed shards
+	 * are re-encoded, since every binary file has its own header and every
+	 * compressed file its own block index.
+	 */
+	private void mergeShards(String outputPath, int numChunks) throws IOException {
+		
+		if (outputPath.endsWith(TemporalEdgeWriter.BINARY_SUFFIX) || outputPath.endsWith(TemporalEdgeWriter.GZIP_SUFFIX)) {
+			
+			try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(outputPath, 3)) {
+				for (int i = 0; i < numChunks; i++) {
+					try (TemporalEdgeReader reader = TemporalEdgeReader.open(shardPath(outputPath, i))) {
+						while (reader.next()) {
+							writer.write(reader.getSource(), reader.getTarget(), reader.getStartTime());
+						}
+					}
+				}
+			}
+			
+		} else {
+			
+			try (FileChannel out = new FileOutputStream(outputPath).getChannel()) {
+				for (int i = 0; i < numChunks; i++) {
+					try (FileChannel in = FileChannel.open(Paths.get(shardPath(outputPath, i)), StandardOpenOption.READ)) {
+						long position = 0;
+						long size = in.size();
+						while (position < size) {
+							position += in.transferTo(position, size - position, out);
+						}
+					}
+				}
+			}
+			
+		}
+	}
+	
+	/**
+	 * @return the number of edge lines converted
+	 */
+	public long convert(MappedLineScanner scanner, TemporalEdgeWriter writer) throws IOException {
+		
+		long count = 0;
+		
+		while (scanner.nextLine()) {
+			
+			if (this.skipComments && scanner.peek() == '%') {
+				continue;
+			}
+			
+			count++;
+			
+			if (count % METRICS_BATCH == 0) {
+				this.metrics.addRecords(METRICS_BATCH);
+			}
+			
+			int fields = scanner.countFields();
+			
+			if (fields != this.numFields) {
+				throw malformed(scanner, "number of elements is " + fields + ", expected " + this.numFields);
+			}
+			
+			if (count % 1000000 == 0) {
+				this.logger.debug("Reading line {}.", count);
+			}
+			
+			int source = 0;
+			int target = 0;
+			try {
+				source = scanner.nextInt();
+				target = scanner.nextInt();
+			} catch (NumberFormatException e) {
+				throw malformed(scanner, "vertex id format error");
+			}
+			
+			int timestamp = 0;
+			try {
+				timestamp = scanner.nextDate();
+			} catch (NumberFormatException e) {
+				throw malformed(scanner, "date format error");
+			}
+			
+			writer.write(source, target, timestamp);
+			if (this.symmetric) {
+				writer.write(target, source, timestamp);
+			}
+			
+		}
+		
+		this.metrics.addRecords(count % METRICS_BATCH);
+		
+		return count;
+	}
+	
+	private static IOException malformed(MappedLineScanner scanner, String problem) throws IOException {
+		return new IOException("Line " + scanner.getLineNumber() + ": " + problem + ": " + scanner.getLine());
+	}
+
+}
@@ -0,0 +1,103 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The steps shared by the growth file datasets: conversion to "path.teg",
+ * optional time bucketing to "path.teg.bucketed", and renumbering to the
+ * normalized "path.teg.sim". A failed step stops the chain.
+ *
+ */
+public class GrowthFilePreprocessor {
+
+	private final GrowthFileConverter converter;
+
+	private final RunMetrics metrics;
+
+	private TimeBucketing timeBucketing;
+
+	final private Logger logger = LoggerFactory.getLogger(GrowthFilePreprocessor.class);
+
+	/**
+	 * @param metrics receives the convert, bucket and renumber stages
+	 */
+	public GrowthFilePreprocessor(GrowthFileConverter converter, RunMetrics metrics) {
+		this.converter = converter;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Collapses the daily timestamps into coarser snapshots before renumbering,
+	 * e.g. {@link TimeBucketing#week()}; null keeps one snapshot per day.
+	 */
+	public void setTimeBucketing(TimeBucketing timeBucketing) {
+		this.timeBucketing = timeBucketing;
+	}
+
+	/**
+	 * Converts the growth file to "path.teg", buckets it to "path.teg.bucketed"
+	 * if a time bucketing is set, and renumbers it to the normalized "path.teg.sim".
+	 *
+	 * @throws IOException if a step fails; the later steps are not run then
+	 */
+	public void processFile(String path) throws IOException {
+
+		this.processFile(path, path + ".teg");
+
+		String tegPath = path + ".teg";
+
+		if (this.timeBucketing != null) {
+
+			String bucketedPath = path + ".teg.bucketed";
+			StageMetrics bucketStage = this.metrics.stage("bucket");
+
+			try {
+				bucketStage.addRecords(new TimeBucketer(this.timeBucketing).bucket(tegPath, bucketedPath));
+				bucketStage.addBytesRead(new File(tegPath).length());
+				bucketStage.addBytesWritten(new File(bucketedPath).length());
+			} finally {
+				bucketStage.finish();
+			}
+
+			tegPath = bucketedPath;
+		}
+
+		StageMetrics stage = this.metrics.stage("renumber");
+
+		try {
+			stage.addRecords(new Renumberer().renumber(tegPath, path + ".teg.sim"));
+			stage.addBytesRead(new File(tegPath).length());
+			stage.addBytesWritten(new File(path + ".teg.sim").length());
+		} finally {
+			stage.finish();
+		}
+	}
+
+	/**
+	 * @param outputPath the ".teg" output, binary if it ends with ".bin",
+	 *        deleted if the conversion fails
+	 */
+	public void processFile(String path, String outputPath) throws IOException {
+
+		this.logger.debug("+processFile({})", path);
+
+		StageMetrics stage = this.metrics.stage("convert");
+
+		try {
+
+			this.converter.setMetrics(stage);
+			this.converter.convert(path, outputPath);
+
+			this.logger.debug("-processFile({})", path);
+
+		} finally {
+			stage.finish();
+		}
+
+	}
+
+}
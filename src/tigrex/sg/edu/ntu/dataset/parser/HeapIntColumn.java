@@ -0,0 +1,34 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+/**
+ * {@link IntColumn} backed by an int[].
+ *
+ */
+public class HeapIntColumn implements IntColumn {
+	
+	private final int[] values;
+	
+	public HeapIntColumn(int size) {
+		this.values = new int[size];
+	}
+	
+	@Override
+	public int get(long index) {
+		return this.values[(int) index];
+	}
+	
+	@Override
+	public void set(long index, int value) {
+		this.values[(int) index] = value;
+	}
+	
+	@Override
+	public long size() {
+		return this.values.length;
+	}
+	
+	@Override
+	public void close() {
+	}
+
+}
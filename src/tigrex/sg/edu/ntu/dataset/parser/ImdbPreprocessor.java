@@ -1,19 +1,16 @@
 package tigrex.sg.edu.ntu.dataset.parser;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,98 +24,95 @@ import org.slf4j.LoggerFactory;
  */
 public class ImdbPreprocessor {
 	
-	private Set<String> vertices;
+	private VertexDictionary actors;
 	
-	private Map<String, Map<String, Set<String>>> snapshots;
+	private Map<Integer, SnapshotGraph> snapshots;
+	
+	private RunMetrics metrics = new RunMetrics("imdb");
 	
 	final private Logger logger = LoggerFactory.getLogger(ImdbPreprocessor.class);
 	
+	public RunMetrics getMetrics() {
+		return this.metrics;
+	}
+	
 	public void readRaw(String path) {
 		
 		this.logger.debug("+readRaw({})", path);
 		
-		this.vertices = new HashSet<String>();
+		this.actors = new VertexDictionary();
 		
-		this.snapshots = new HashMap<String, Map<String, Set<String>>>();
+		Map<Integer, List<int[]>> casts = new HashMap<Integer, List<int[]>>();
+		
+		StageMetrics stage = this.metrics.stage("parse");
 		
 		int actorCount = 0;
-		try (BufferedReader br = new BufferedReader(new FileReader(path))) {
-		    String line;
+		try (Reader in = new InputStreamReader(InputFiles.open(path), StandardCharsets.UTF_8)) {
+			CsvTokenizer tokenizer = new CsvTokenizer(in);
 		    int count = 0;
 		    
 		    // Skip header
-		    line = br.readLine();
+		    tokenizer.next();
 		    
-		    while ((line = br.readLine()) != null) {
+		    List<String> names = new ArrayList<String>();
+		    while (tokenizer.next()) {
 		    	count++;
 		    	
-		    	String[] parts = parseLine(line);
-		    	
-		    	if (parts.length != 12) {
-		    		this.logger.error("Number of elements is {}, expected 12.", parts.length);
-		    		this.logger.error(line);
+		    	if (tokenizer.getNumFields() != 12) {
+		    		this.logger.error("Number of elements is {}, expected 12.", tokenizer.getNumFields());
+		    		this.logger.error(tokenizer.getRecord());
 		    		System.exit(1);
 		    	}
 		    	
-		    	String[] actors = parts[5].split(",");
-		    	actorCount += actors.length;
+		    	// Only the actors and year columns are turned into Strings
+		    	names.clear();
+		    	tokenizer.split(5, ',', names);
+		    	actorCount += names.size();
 		    	
-		    	String year = parts[6];
+		    	int year = 0;
+		    	try {
+		    		year = tokenizer.getInt(6);
+		    	} catch (NumberFormatException e) {
+		    		this.logger.error("Year format error: {}.", tokenizer.getString(6));
+		    		System.exit(1);
+		    	}
 
-		    	List<String> beings = new ArrayList<String>();
-		    	
 		    	// Update vertices
-	    		for (String actor: actors) {
-	    			actor = actor.trim();
-		    		this.vertices.add(actor);
-		    		beings.add(actor);
+		    	IntHashSet beings = new IntHashSet(names.size());
+	    		for (String name: names) {
+		    		beings.add(this.actors.getOrAdd(name));
 		    	}
 		    	
-		    	// Update edges
-		    	if (this.snapshots.containsKey(year)) {
-		    		Map<String, Set<String>> edges = this.snapshots.get(year);
-		    		
-		    		for (String being: beings) {
-		    			if (edges.containsKey(being)) {
-		    				Set<String> neighbors = edges.get(being);
-		    				neighbors.addAll(beings);
-		    			} else {
-		    				Set<String> neighbors = new HashSet<String>();
-		    				neighbors.addAll(beings);
-		    				edges.put(being, neighbors);
-		    			}
-		    		}
-		    		
-		    	} else {
-		    		Map<String, Set<String>> edges = new HashMap<String, Set<String>>();
-		    		this.snapshots.put(year, edges);
-		    		
-		    		for (String being: beings) {
-		    			Set<String> neighbors = new HashSet<String>();
-	    				neighbors.addAll(beings);
-	    				edges.put(being, neighbors);
-		    		}
-		    		
+		    	List<int[]> movies = casts.get(year);
+		    	if (movies == null) {
+		    		movies = new ArrayList<int[]>();
+		    		casts.put(year, movies);
 		    	}
+		    	movies.add(beings.toArray());
 		    	
+		    	stage.addRecords(1);
 		    }
 		    
-		    for (String year: this.snapshots.keySet()) {
-		    	Map<String, Set<String>> edges = this.snapshots.get(year);
-		    	
-		    	int totalEdges = 0;
-		    	for (String being: edges.keySet()) {
-		    		edges.get(being).remove(being);
-		    		totalEdges += edges.get(being).size();
-		    	}
-		    	
-		    	this.logger.debug("Snapshot {} has {} edges.", year, totalEdges);
+		    stage.addBytesRead(new File(path).length());
+		    stage.finish();
+		    
+		    // Update edges
+		    stage = this.metrics.stage("expand");
+		    this.snapshots = new CliqueExpander().expand(casts);
+		    
+		    for (SnapshotGraph graph: this.snapshots.values()) {
+		    	stage.addRecords(graph.getNumEdges());
+		    }
+		    stage.finish();
+		    
+		    for (int year: this.snapshots.keySet()) {
+		    	this.logger.debug("Snapshot {} has {} edges.", year, this.snapshots.get(year).getNumEdges());
 		    }
 		    
 		    
 		    this.logger.debug("Total number of vertices is {}.", actorCount);
 		    
-		    this.logger.debug("Total number of unique vertices is {}.", this.vertices.size());
+		    this.logger.debug("Total number of unique vertices is {}.", this.actors.size());
 		    
 		    this.logger.debug("Total number of lines is {}.", count); 
 			
@@ -136,43 +130,21 @@ public class ImdbPreprocessor {
 
 	
 	public String[] parseLine(String line) {
-		// Remove double quotes
-		line = line.replaceAll("\"\"", "");
-		
 		
-		List<String> parts = new ArrayList<String>();
+		CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(line));
 		
-		StringBuilder builder = new StringBuilder();
-		boolean startQuoted = false;
-		
-		for (int i = 0; i < line.length(); i++) {
-			char c = line.charAt(i);
-			
-			if (c == '"') {
-				if (!startQuoted) {
-					startQuoted = true;
-				} else {
-					startQuoted = false;
-				}
-				
-			} else if (c == ',') {
-				
-				if (startQuoted) {
-					builder.append(c);
-				} else {
-					String part = builder.toString();
-					parts.add(part);
-					builder.setLength(0);
-				}
-			} else {
-				builder.append(c);
+		try {
+			if (!tokenizer.next()) {
+				return new String[] {""};
 			}
-			
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Cannot parse line: " + line, e);
 		}
-		parts.add(builder.toString());
 		
-		String[] result = new String[parts.size()];
-		result = parts.toArray(result);
+		String[] result = new String[tokenizer.getNumFields()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = tokenizer.getString(i);
+		}
 
 		return result;
 	}
@@ -181,7 +153,7 @@ public class ImdbPreprocessor {
 	@SuppressWarnings("unused")
 	private void testParser() {
 		
-		String[] cases = {"single", "double1,double2", "triple1,triple2,triple3", "p1,p2,\"p3\",p4", "p1,p2,\"p3,p4\",p5"};
+		String[] cases = {"single", "double1,double2", "triple1,triple2,triple3", "p1,p2,\"p3\",p4", "p1,p2,\"p3,p4\",p5", "p1,\"say \"\"hi\"\", ok\",p3", "p1,,"};
 		
 		for (String s:cases) {
 			String parts[] = parseLine(s);
@@ -196,41 +168,26 @@ public class ImdbPreprocessor {
 		
 	}
 	
+	/**
+	 * Writes the normalized TEG (".teg.sim") with the actor and year mappings next to it.
+	 */
 	public void writeToFile(String path) {
 		
 		this.logger.debug("+writeFile({})", path);
 			
+		StageMetrics stage = this.metrics.stage("write");
+		
 		try {
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-					new FileOutputStream(path), "utf-8"));
-			
-			
-		   for (String year: this.snapshots.keySet()) {
-		    	Map<String, Set<String>> edges = this.snapshots.get(year);
-		    	
-		    	for (String being: edges.keySet()) {
-		    		
-		    		for(String neighbor: edges.get(being)) {
-		    			
-		    			String line = being + "," + neighbor + "," + year;
-						writer.write(line);
-						writer.newLine();
-		    			
-		    		}
-		    		
-		    	}
-		    	
-		    }
-			
-			writer.close();
-			
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			new NormalizedTegWriter().write(this.snapshots, this.actors, path);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		
+		for (SnapshotGraph graph: this.snapshots.values()) {
+			stage.addRecords(graph.getNumEdges());
+		}
+		stage.addBytesWritten(new File(path).length());
+		stage.finish();
 			
 		this.logger.debug("-writeFile({})", path);
 		
@@ -241,8 +198,15 @@ public class ImdbPreprocessor {
 	
 		ImdbPreprocessor parser = new ImdbPreprocessor();
 		String path = "raw/IMDB-Movie-Data.csv";
+		parser.getMetrics().startReporting(60);
 		parser.readRaw(path);
-		parser.writeToFile(path + ".teg");
+		parser.writeToFile(path + ".teg.sim");
+		
+		try {
+			parser.getMetrics().writeSummary(path + ".metrics.json");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 		
 	}
 
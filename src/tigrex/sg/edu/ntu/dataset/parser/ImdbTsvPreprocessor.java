@@ -0,0 +1,310 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * https://datasets.imdbws.com/
+ * title.basics.tsv.gz, title.principals.tsv.gz
+ * 
+ * Joins the cast lists of title.principals with the start years of
+ * title.basics on tconst. The smaller title.basics is loaded into a
+ * primitive tconst-to-year index, then title.principals (grouped by tconst)
+ * is streamed against it, giving the same per-year co-star TEG as
+ * {@link ImdbPreprocessor}.
+ *
+ */
+public class ImdbTsvPreprocessor {
+	
+	private static final String NULL = "\\N";
+	
+	// IMDb ids are a two-letter prefix followed by a number, e.g. tt0000001 and nm0000001
+	private static final int ID_PREFIX_LENGTH = 2;
+	
+	// Few enough to compare in place, without a String per row for a set lookup
+	private String[] titleTypes = {"movie"};
+	
+	private String[] categories = {"actor", "actress"};
+	
+	private IntIntHashMap titleYears;
+	
+	private VertexDictionary actors;
+	
+	private Map<Integer, SnapshotGraph> snapshots;
+	
+	private RunMetrics metrics = new RunMetrics("imdb-tsv");
+	
+	final private Logger logger = LoggerFactory.getLogger(ImdbTsvPreprocessor.class);
+	
+	public RunMetrics getMetrics() {
+		return this.metrics;
+	}
+	
+	/**
+	 * @param titleTypes the titleType values to keep, or null to keep every title
+	 */
+	public void setTitleTypes(Set<String> titleTypes) {
+		this.titleTypes = titleTypes == null ? null : titleTypes.toArray(new String[titleTypes.size()]);
+	}
+	
+	/**
+	 * @param categories the principal categories that make a cast member
+	 */
+	public void setCategories(Set<String> categories) {
+		this.categories = categories.toArray(new String[categories.size()]);
+	}
+	
+	private static boolean equalsAny(CsvTokenizer tokenizer, int field, String[] values) {
+		
+		for (String value: values) {
+			if (tokenizer.equals(field, value)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Reads tconst and startYear of the titles with a year, columns
+	 * tconst, titleType, primaryTitle, originalTitle, isAdult, startYear, ...
+	 */
+	public void readBasics(String path) {
+		
+		this.logger.debug("+readBasics({})", path);
+		
+		this.titleYears = new IntIntHashMap(1 << 20);
+		
+		StageMetrics stage = this.metrics.stage("basics");
+		
+		try (Reader in = new InputStreamReader(InputFiles.open(path), StandardCharsets.UTF_8)) {
+			
+			// IMDb TSV files do not quote fields, titles may contain literal quotes
+			CsvTokenizer tokenizer = new CsvTokenizer(in, '\t', false);
+			long count = 0;
+			
+			// Skip header
+			tokenizer.next();
+			
+			while (tokenizer.next()) {
+				count++;
+				stage.addRecords(1);
+				
+				if (tokenizer.getNumFields() < 6) {
+					this.logger.error("Number of elements is {}, expected at least 6.", tokenizer.getNumFields());
+					this.logger.error(tokenizer.getRecord());
+					System.exit(1);
+				}
+				
+				if (tokenizer.equals(5, NULL) || (this.titleTypes != null && !equalsAny(tokenizer, 1, this.titleTypes))) {
+					continue;
+				}
+				
+				try {
+					this.titleYears.put(tokenizer.getInt(0, ID_PREFIX_LENGTH), tokenizer.getInt(5));
+				} catch (NumberFormatException e) {
+					this.logger.error("Title format error: {}.", tokenizer.getRecord());
+					System.exit(1);
+				}
+			}
+			
+			this.logger.debug("Total number of titles is {}, {} with a year.", count, this.titleYears.size());
+			
+		} catch (IOException e) {
+			this.logger.error("Cannot read {}: {}.", path, e.getMessage());
+			System.exit(1);
+		}
+		
+		stage.addBytesRead(new File(path).length());
+		stage.finish();
+		
+		this.logger.debug("-readBasics({})", path);
+		
+	}
+	
+	/**
+	 * Streams the principals, columns tconst, ordering, nconst, category, job, characters.
+	 * The file must be sorted by tconst, as the official dump is.
+	 */
+	public void readPrincipals(String path) {
+		
+		this.logger.debug("+readPrincipals({})", path);
+		
+		this.actors = new VertexDictionary();
+		
+		// Actor ids by nconst number, so that only the first occurrence of an actor creates a String
+		IntIntHashMap actorIds = new IntIntHashMap(1 << 20);
+		
+		Map<Integer, List<int[]>> casts = new HashMap<Integer, List<int[]>>();
+		
+		StageMetrics stage = this.metrics.stage("principals");
+		
+		try (Reader in = new InputStreamReader(InputFiles.open(path), StandardCharsets.UTF_8)) {
+			
+			CsvTokenizer tokenizer = new CsvTokenizer(in, '\t', false);
+			long count = 0;
+			int numTitles = 0;
+			
+			// Skip header
+			tokenizer.next();
+			
+			int title = -1;
+			int year = -1;
+			IntHashSet cast = new IntHashSet();
+			
+			while (true) {
+				
+				boolean more = tokenizer.next();
+				
+				int next = -1;
+				if (more) {
+					count++;
+					stage.addRecords(1);
+					
+					if (tokenizer.getNumFields() < 4) {
+						this.logger.error("Number of elements is {}, expected at least 4.", tokenizer.getNumFields());
+						this.logger.error(tokenizer.getRecord());
+						System.exit(1);
+					}
+					
+					try {
+						next = tokenizer.getInt(0, ID_PREFIX_LENGTH);
+					} catch (NumberFormatException e) {
+						this.logger.error("Title format error: {}.", tokenizer.getRecord());
+						System.exit(1);
+					}
+				}
+				
+				if (next != title) {
+					
+					// The previous title is complete
+					if (!cast.isEmpty()) {
+						List<int[]> movies = casts.get(year);
+						if (movies == null) {
+							movies = new ArrayList<int[]>();
+							casts.put(year, movies);
+						}
+						movies.add(cast.toArray());
+						cast.clear();
+						numTitles++;
+					}
+					
+					if (!more) {
+						break;
+					}
+					
+					if (next < title) {
+						this.logger.error("Principals are not sorted by tconst: {}.", tokenizer.getRecord());
+						System.exit(1);
+					}
+					
+					title = next;
+					year = this.titleYears.get(title, -1);
+				}
+				
+				if (year < 0 || !equalsAny(tokenizer, 3, this.categories)) {
+					continue;
+				}
+				
+				int nconst = 0;
+				try {
+					nconst = tokenizer.getInt(2, ID_PREFIX_LENGTH);
+				} catch (NumberFormatException e) {
+					this.logger.error("Name format error: {}.", tokenizer.getRecord());
+					System.exit(1);
+				}
+				
+				int actor = actorIds.get(nconst, -1);
+				if (actor < 0) {
+					actor = this.actors.getOrAdd(tokenizer.getString(2));
+					actorIds.put(nconst, actor);
+				}
+				cast.add(actor);
+				
+			}
+			
+			this.logger.debug("Total number of lines is {}.", count);
+			this.logger.debug("Total number of titles with a cast is {}.", numTitles);
+			this.logger.debug("Total number of unique vertices is {}.", this.actors.size());
+			
+		} catch (IOException e) {
+			this.logger.error("Cannot read {}: {}.", path, e.getMessage());
+			System.exit(1);
+		}
+		
+		stage.addBytesRead(new File(path).length());
+		stage.finish();
+		
+		// The index is not needed once the join is done
+		this.titleYears = null;
+		
+		stage = this.metrics.stage("expand");
+		this.snapshots = new CliqueExpander().expand(casts);
+		
+		for (SnapshotGraph graph: this.snapshots.values()) {
+			stage.addRecords(graph.getNumEdges());
+		}
+		stage.finish();
+		
+		for (int year: this.snapshots.keySet()) {
+			this.logger.debug("Snapshot {} has {} edges.", year, this.snapshots.get(year).getNumEdges());
+		}
+		
+		this.logger.debug("-readPrincipals({})", path);
+		
+	}
+	
+	/**
+	 * Writes the normalized TEG (".teg.sim") with the actor (nconst) and year mappings next to it.
+	 */
+	public void writeToFile(String path) {
+		
+		this.logger.debug("+writeFile({})", path);
+		
+		StageMetrics stage = this.metrics.stage("write");
+		
+		try {
+			new NormalizedTegWriter().write(this.snapshots, this.actors, path);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		for (SnapshotGraph graph: this.snapshots.values()) {
+			stage.addRecords(graph.getNumEdges());
+		}
+		stage.addBytesWritten(new File(path).length());
+		stage.finish();
+		
+		this.logger.debug("-writeFile({})", path);
+		
+	}
+	
+	
+	public static void main(String[] args) {
+		
+		ImdbTsvPreprocessor parser = new ImdbTsvPreprocessor();
+		parser.getMetrics().startReporting(60);
+		parser.readBasics("raw/title.basics.tsv.gz");
+		parser.readPrincipals("raw/title.principals.tsv.gz");
+		parser.writeToFile("raw/title.principals.tsv.teg.sim");
+		
+		try {
+			parser.getMetrics().writeSummary("raw/title.principals.tsv.metrics.json");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+	}
+
+}
@@ -0,0 +1,60 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens raw dataset files, inflating ".gz" files on a separate thread.
+ *
+ */
+public final class InputFiles {
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private InputFiles() {
+	}
+	
+	public static InputStream open(String path) throws IOException {
+		
+		if (isCompressed(path)) {
+			return openGzip(path);
+		}
+		
+		return new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE);
+	}
+	
+	/**
+	 * Inflates the file whatever its name.
+	 */
+	public static InputStream openGzip(String path) throws IOException {
+		
+		InputStream in = new FileInputStream(path);
+		
+		try {
+			return new AsyncGzipInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+		} catch (IOException | RuntimeException e) {
+			// E.g. not a gzip file: the header is read right away
+			in.close();
+			throw e;
+		}
+	}
+	
+	public static boolean isCompressed(String path) {
+		return path.endsWith(".gz");
+	}
+	
+	/**
+	 * @return the path without its ".gz" suffix, used as the base name of the outputs
+	 */
+	public static String stripCompression(String path) {
+		
+		if (isCompressed(path)) {
+			return path.substring(0, path.length() - ".gz".length());
+		}
+		
+		return path;
+	}
+
+}
@@ -0,0 +1,54 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Fixed-size column of ints addressed by long index, stored on or off the heap.
+ *
+ */
+public interface IntColumn extends Closeable {
+	
+	/**
+	 * Where the column data lives.
+	 */
+	enum Storage {
+		/** A plain int[], limited to 2^31 - 1 entries. */
+		HEAP,
+		/**
+		 * Direct ByteBuffers outside the Java heap. Their total is capped by
+		 * -XX:MaxDirectMemorySize, which defaults to the maximum heap size, so
+		 * a column larger than -Xmx needs that flag raised; graphs that do not
+		 * fit in memory belong in MAPPED.
+		 */
+		DIRECT,
+		/** Memory-mapped scratch files, paged by the operating system. */
+		MAPPED
+	}
+	
+	int get(long index);
+	
+	void set(long index, int value);
+	
+	long size();
+	
+	/**
+	 * @param scratchDirectory where MAPPED columns create their backing file
+	 */
+	static IntColumn allocate(Storage storage, long size, File scratchDirectory) throws IOException {
+		
+		switch (storage) {
+		case DIRECT:
+			return ChunkedIntColumn.allocateDirect(size);
+		case MAPPED:
+			return ChunkedIntColumn.map(size, scratchDirectory);
+		default:
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("Column of " + size + " ints does not fit in an array, use MAPPED storage.");
+			}
+			return new HeapIntColumn((int) size);
+		}
+	}
+
+}
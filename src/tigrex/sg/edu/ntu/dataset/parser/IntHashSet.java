@@ -0,0 +1,152 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Open-addressing hash set of primitive ints with linear probing.
+ * 
+ * Integer.MIN_VALUE marks a free slot in the table, so it is tracked by a
+ * separate flag when it is added as a value.
+ *
+ */
+public class IntHashSet {
+	
+	private static final int FREE = Integer.MIN_VALUE;
+	
+	private int[] slots;
+	private int mask;
+	private int size;
+	private boolean containsFree;
+	
+	public IntHashSet() {
+		this(8);
+	}
+	
+	public IntHashSet(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		this.allocate(capacity);
+	}
+	
+	private void allocate(int capacity) {
+		this.slots = new int[capacity];
+		Arrays.fill(this.slots, FREE);
+		this.mask = capacity - 1;
+	}
+	
+	private static int hash(int value) {
+		int h = value * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * @return true if the value was not in the set yet
+	 */
+	public boolean add(int value) {
+		
+		if (value == FREE) {
+			if (this.containsFree) {
+				return false;
+			}
+			this.containsFree = true;
+			this.size++;
+			return true;
+		}
+		
+		int i = hash(value) & this.mask;
+		while (this.slots[i] != FREE) {
+			if (this.slots[i] == value) {
+				return false;
+			}
+			i = (i + 1) & this.mask;
+		}
+		
+		this.slots[i] = value;
+		this.size++;
+		
+		if (this.size * 2 > this.slots.length) {
+			this.rehash(this.slots.length << 1);
+		}
+		
+		return true;
+	}
+	
+	public boolean contains(int value) {
+		
+		if (value == FREE) {
+			return this.containsFree;
+		}
+		
+		int i = hash(value) & this.mask;
+		while (this.slots[i] != FREE) {
+			if (this.slots[i] == value) {
+				return true;
+			}
+			i = (i + 1) & this.mask;
+		}
+		
+		return false;
+	}
+	
+	private void rehash(int capacity) {
+		
+		int[] old = this.slots;
+		this.allocate(capacity);
+		
+		for (int value: old) {
+			if (value != FREE) {
+				int i = hash(value) & this.mask;
+				while (this.slots[i] != FREE) {
+					i = (i + 1) & this.mask;
+				}
+				this.slots[i] = value;
+			}
+		}
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	public void clear() {
+		Arrays.fill(this.slots, FREE);
+		this.size = 0;
+		this.containsFree = false;
+	}
+	
+	public void forEach(IntConsumer consumer) {
+		
+		if (this.containsFree) {
+			consumer.accept(FREE);
+		}
+		
+		for (int value: this.slots) {
+			if (value != FREE) {
+				consumer.accept(value);
+			}
+		}
+	}
+	
+	public int[] toArray() {
+		
+		int[] values = new int[this.size];
+		int n = 0;
+		
+		if (this.containsFree) {
+			values[n++] = FREE;
+		}
+		
+		for (int value: this.slots) {
+			if (value != FREE) {
+				values[n++] = value;
+			}
+		}
+		
+		return values;
+	}
+
+}
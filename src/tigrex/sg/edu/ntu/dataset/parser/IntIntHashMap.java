@@ -0,0 +1,142 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive int keys to int values with linear probing.
+ * 
+ * Integer.MIN_VALUE marks a free slot in the key table, so its value is kept
+ * in a separate field when it is used as a key.
+ *
+ */
+public class IntIntHashMap {
+	
+	private static final int FREE = Integer.MIN_VALUE;
+	
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	private boolean containsFree;
+	private int freeValue;
+	
+	public IntIntHashMap() {
+		this(8);
+	}
+	
+	public IntIntHashMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		this.allocate(capacity);
+	}
+	
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new int[capacity];
+		Arrays.fill(this.keys, FREE);
+		this.mask = capacity - 1;
+	}
+	
+	private static int hash(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	public void put(int key, int value) {
+		
+		if (key == FREE) {
+			if (!this.containsFree) {
+				this.containsFree = true;
+				this.size++;
+			}
+			this.freeValue = value;
+			return;
+		}
+		
+		int i = hash(key) & this.mask;
+		while (this.keys[i] != FREE) {
+			if (this.keys[i] == key) {
+				this.values[i] = value;
+				return;
+			}
+			i = (i + 1) & this.mask;
+		}
+		
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+		
+		if (this.size * 2 > this.keys.length) {
+			this.rehash(this.keys.length << 1);
+		}
+	}
+	
+	/**
+	 * @return the value of the key, or defaultValue if the key is not in the map
+	 */
+	public int get(int key, int defaultValue) {
+		
+		if (key == FREE) {
+			return this.containsFree ? this.freeValue : defaultValue;
+		}
+		
+		int i = hash(key) & this.mask;
+		while (this.keys[i] != FREE) {
+			if (this.keys[i] == key) {
+				return this.values[i];
+			}
+			i = (i + 1) & this.mask;
+		}
+		
+		return defaultValue;
+	}
+	
+	public boolean containsKey(int key) {
+		
+		if (key == FREE) {
+			return this.containsFree;
+		}
+		
+		int i = hash(key) & this.mask;
+		while (this.keys[i] != FREE) {
+			if (this.keys[i] == key) {
+				return true;
+			}
+			i = (i + 1) & this.mask;
+		}
+		
+		return false;
+	}
+	
+	private void rehash(int capacity) {
+		
+		int[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		this.allocate(capacity);
+		
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != FREE) {
+				int i = hash(oldKeys[j]) & this.mask;
+				while (this.keys[i] != FREE) {
+					i = (i + 1) & this.mask;
+				}
+				this.keys[i] = oldKeys[j];
+				this.values[i] = oldValues[j];
+			}
+		}
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+	
+	public void clear() {
+		Arrays.fill(this.keys, FREE);
+		this.size = 0;
+		this.containsFree = false;
+	}
+
+}
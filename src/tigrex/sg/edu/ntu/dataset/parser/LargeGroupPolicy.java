@@ -0,0 +1,112 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Decides what to do with a very large group (a paper with hundreds of
+ * authors) before {@link CliqueExpander} turns it into a clique of
+ * quadratic size.
+ *
+ */
+public interface LargeGroupPolicy {
+
+	/**
+	 * @param group distinct member ids in ascending order
+	 * @return the members to connect, in ascending order; may be the group itself
+	 */
+	int[] apply(int[] group);
+
+	/**
+	 * Identifies the policy and its parameters, so that incremental runs can
+	 * tell whether earlier output was expanded the same way.
+	 * 
+	 * @return a description stable across runs, or null if unknown
+	 */
+	default String getFingerprint() {
+		return null;
+	}
+
+	/**
+	 * Connects every group in full.
+	 */
+	static LargeGroupPolicy keepAll() {
+
+		return new LargeGroupPolicy() {
+
+			@Override
+			public int[] apply(int[] group) {
+				return group;
+			}
+
+			@Override
+			public String getFingerprint() {
+				return "keepAll";
+			}
+		};
+	}
+
+	/**
+	 * Drops the groups with more than maxSize members.
+	 */
+	static LargeGroupPolicy skipAbove(final int maxSize) {
+
+		return new LargeGroupPolicy() {
+
+			@Override
+			public int[] apply(int[] group) {
+				return group.length > maxSize ? new int[0] : group;
+			}
+
+			@Override
+			public String getFingerprint() {
+				return "skipAbove(" + maxSize + ")";
+			}
+		};
+	}
+
+	/**
+	 * Keeps maxSize members drawn at random from every larger group. The
+	 * sample only depends on the seed and the members, not on the order in
+	 * which groups are expanded.
+	 */
+	static LargeGroupPolicy sample(final int maxSize, final long seed) {
+
+		if (maxSize < 2) {
+			throw new IllegalArgumentException("Sample size is " + maxSize + ", expected >= 2.");
+		}
+
+		return new LargeGroupPolicy() {
+
+			@Override
+			public int[] apply(int[] group) {
+
+				if (group.length <= maxSize) {
+					return group;
+				}
+
+				SplittableRandom rand = new SplittableRandom(seed ^ Arrays.hashCode(group) * 0x9E3779B97F4A7C15L);
+				int[] members = group.clone();
+
+				// Partial Fisher-Yates: the first maxSize slots end up a uniform sample
+				for (int i = 0; i < maxSize; i++) {
+					int j = i + rand.nextInt(members.length - i);
+					int swap = members[i];
+					members[i] = members[j];
+					members[j] = swap;
+				}
+
+				int[] sample = Arrays.copyOf(members, maxSize);
+				Arrays.sort(sample);
+
+				return sample;
+			}
+
+			@Override
+			public String getFingerprint() {
+				return "sample(" + maxSize + ", " + seed + ")";
+			}
+		};
+	}
+
+}
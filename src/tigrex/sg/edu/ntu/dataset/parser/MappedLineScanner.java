@@ -0,0 +1,258 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Line and field scanner over a memory-mapped file.
+ * 
+ * Fields are separated by runs of spaces, tabs or carriage returns. Ints and
+ * dates are parsed straight from the mapped bytes, so scanning produces no
+ * garbage; only {@link #getLine()}, meant for error messages, allocates.
+ * 
+ * Files larger than the mapping window are mapped piece by piece, each window
+ * starting at the beginning of a line.
+ *
+ */
+public class MappedLineScanner implements Closeable {
+	
+	private static final int WINDOW_SIZE = 1 << 30;
+	
+	private final FileChannel channel;
+	private final boolean ownsChannel;
+	private final long end;
+	
+	private MappedByteBuffer window;
+	private long windowStart;
+	private int windowLimit;
+	
+	private long nextLineOffset;
+	private int lineStart;
+	private int lineEnd;
+	private int position;
+	
+	public MappedLineScanner(String path) throws IOException {
+		this(FileChannel.open(Paths.get(path), StandardOpenOption.READ), true);
+	}
+	
+	private MappedLineScanner(FileChannel channel, boolean ownsChannel) throws IOException {
+		this(channel, 0, channel.size(), ownsChannel);
+	}
+	
+	/**
+	 * Scans the lines of a region of the file.
+	 * 
+	 * @param start offset of the first byte of a line
+	 * @param end offset just after the newline of the last line, or the file size
+	 */
+	public MappedLineScanner(FileChannel channel, long start, long end) throws IOException {
+		this(channel, start, end, false);
+	}
+	
+	private MappedLineScanner(FileChannel channel, long start, long end, boolean ownsChannel) throws IOException {
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.end = end;
+		this.nextLineOffset = start;
+		this.windowStart = start;
+	}
+	
+	private void map(long offset) throws IOException {
+		this.windowStart = offset;
+		this.windowLimit = (int) Math.min(WINDOW_SIZE, this.end - offset);
+		this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, this.windowLimit);
+	}
+	
+	private int indexOfNewline(int from) {
+		
+		for (int i = from; i < this.windowLimit; i++) {
+			if (this.window.get(i) == '\n') {
+				return i;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Moves to the beginning of the next line.
+	 * 
+	 * @return false at the end of the file or region
+	 */
+	public boolean nextLine() throws IOException {
+		
+		if (this.nextLineOffset >= this.end) {
+			return false;
+		}
+		
+		if (this.window == null || this.nextLineOffset >= this.windowStart + this.windowLimit) {
+			this.map(this.nextLineOffset);
+		}
+		
+		int start = (int) (this.nextLineOffset - this.windowStart);
+		int newline = this.indexOfNewline(start);
+		
+		if (newline < 0 && this.windowStart + this.windowLimit < this.end) {
+			// The line continues past the window
+			this.map(this.nextLineOffset);
+			start = 0;
+			newline = this.indexOfNewline(start);
+			
+			if (newline < 0 && this.windowLimit == WINDOW_SIZE) {
+				throw new IOException("Line at offset " + this.nextLineOffset + " is longer than " + WINDOW_SIZE + " bytes.");
+			}
+		}
+		
+		this.lineStart = start;
+		this.lineEnd = newline < 0 ? this.windowLimit : newline;
+		this.position = start;
+		this.nextLineOffset = this.windowStart + (newline < 0 ? this.windowLimit : newline + 1);
+		
+		return true;
+	}
+	
+	private static boolean isSeparator(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+	
+	private void skipSeparators() {
+		while (this.position < this.lineEnd && isSeparator(this.window.get(this.position))) {
+			this.position++;
+		}
+	}
+	
+	/**
+	 * @return the first byte of the line, or -1 for an empty line
+	 */
+	public int peek() {
+		return this.lineStart < this.lineEnd ? this.window.get(this.lineStart) : -1;
+	}
+	
+	/**
+	 * @return the number of fields on the current line
+	 */
+	public int countFields() {
+		
+		int count = 0;
+		boolean inField = false;
+		
+		for (int i = this.lineStart; i < this.lineEnd; i++) {
+			boolean separator = isSeparator(this.window.get(i));
+			if (!separator && !inField) {
+				count++;
+			}
+			inField = !separator;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Parses the next field as a non-negative int.
+	 */
+	public int nextInt() {
+		return this.nextNumber(false);
+	}
+	
+	/**
+	 * Parses the next field as a date such as "2007-01-15", returned as the
+	 * int 20070115. Dashes are dropped, any other non-digit is an error.
+	 */
+	public int nextDate() {
+		return this.nextNumber(true);
+	}
+	
+	private int nextNumber(boolean skipDashes) {
+		
+		this.skipSeparators();
+		
+		long value = 0;
+		int digits = 0;
+		
+		while (this.position < this.lineEnd) {
+			byte b = this.window.get(this.position);
+			
+			if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+				digits++;
+				
+				if (value > Integer.MAX_VALUE) {
+					throw new NumberFormatException("Number too large.");
+				}
+			} else if (isSeparator(b)) {
+				break;
+			} else if (!(skipDashes && b == '-')) {
+				throw new NumberFormatException("Unexpected character '" + (char) b + "'.");
+			}
+			
+			this.position++;
+		}
+		
+		if (digits == 0) {
+			throw new NumberFormatException("Missing number.");
+		}
+		
+		return (int) value;
+	}
+	
+	/**
+	 * Counts the lines before the current one from the start of the file, so
+	 * like {@link #getLine()} it is meant for error messages only.
+	 * 
+	 * @return the 1-based number of the current line in the whole file
+	 */
+	public long getLineNumber() throws IOException {
+		
+		long offset = this.windowStart + this.lineStart;
+		long lineNumber = 1;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		
+		for (long position = 0; position < offset;) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), offset - position));
+			int read = this.channel.read(buffer, position);
+			if (read < 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) == '\n') {
+					lineNumber++;
+				}
+			}
+			position += read;
+		}
+		
+		return lineNumber;
+	}
+	
+	/**
+	 * @return the current line, without its line terminator
+	 */
+	public String getLine() {
+		
+		byte[] bytes = new byte[this.lineEnd - this.lineStart];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.window.get(this.lineStart + i);
+		}
+		
+		return new String(bytes, StandardCharsets.UTF_8).trim();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		
+		this.window = null;
+		
+		if (this.ownsChannel) {
+			this.channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes interned snapshot graphs as a normalized temporal edge list (".teg.sim",
+ * or binary if the path ends with ".bin").
+ * 
+ * Vertices with at least one edge are renumbered to 0..n-1 in order of first
+ * appearance, and snapshots to 0..T-1 in ascending order of their raw
+ * timestamps. The mappings are written next to the edges as "path.vertices"
+ * ("id,name") and "path.timestamps" ("id,raw timestamp").
+ * 
+ * Edges are written grouped by snapshot and sorted by new source and target
+ * within it, so binary outputs also get the snapshot index of
+ * {@link SnapshotIndexedWriter}.
+ *
+ */
+public class NormalizedTegWriter {
+	
+	final private Logger logger = LoggerFactory.getLogger(NormalizedTegWriter.class);
+	
+	public void write(Map<Integer, SnapshotGraph> snapshots, VertexDictionary dictionary, String path) throws IOException {
+		
+		try (TemporalEdgeWriter writer = open(path)) {
+			this.write(snapshots, dictionary, writer, path);
+		}
+	}
+	
+	/**
+	 * Opens a 3-column output, with the snapshot index of {@link SnapshotIndexedWriter} if it is binary.
+	 */
+	static TemporalEdgeWriter open(String path) throws IOException {
+		return path.endsWith(TemporalEdgeWriter.BINARY_SUFFIX) ? new SnapshotIndexedWriter(path, 3) : TemporalEdgeWriter.open(path, 3);
+	}
+	
+	/**
+	 * @return the directed edge packed as (source << 32 | target), for non-negative ids
+	 */
+	static long edge(int source, int target) {
+		return (long) source << 32 | target;
+	}
+	
+	static int source(long edge) {
+		return (int) (edge >>> 32);
+	}
+	
+	static int target(long edge) {
+		return (int) edge;
+	}
+	
+	/**
+	 * Writes the packed edges of one snapshot sorted by source and target.
+	 */
+	static void writeSnapshot(long[] edges, int numEdges, int timestamp, TemporalEdgeWriter writer) throws IOException {
+		
+		edges = CliqueExpander.radixSort(edges, numEdges);
+		
+		for (int i = 0; i < numEdges; i++) {
+			writer.write(source(edges[i]), target(edges[i]), timestamp);
+		}
+	}
+	
+	/**
+	 * Writes the edges to the given writer and the mappings to "mappingPath.vertices" and "mappingPath.timestamps".
+	 */
+	public void write(Map<Integer, SnapshotGraph> snapshots, VertexDictionary dictionary, TemporalEdgeWriter writer, String mappingPath) throws IOException {
+		
+		this.logger.info("+write({})", mappingPath);
+		
+		int[] timestamps = new int[snapshots.size()];
+		int numSnapshots = 0;
+		for (Map.Entry<Integer, SnapshotGraph> entry: snapshots.entrySet()) {
+			if (entry.getValue().getNumEdges() > 0) {
+				timestamps[numSnapshots++] = entry.getKey();
+			}
+		}
+		timestamps = Arrays.copyOf(timestamps, numSnapshots);
+		Arrays.sort(timestamps);
+		
+		int[] newIds = new int[dictionary.size()];
+		Arrays.fill(newIds, -1);
+		int numVertices = 0;
+		long numEdges = 0;
+		
+		for (int t = 0; t < timestamps.length; t++) {
+			
+			SnapshotGraph graph = snapshots.get(timestamps[t]);
+			
+			if (graph.getNumEdges() > Integer.MAX_VALUE - 8) {
+				throw new IOException("Snapshot " + timestamps[t] + " has " + graph.getNumEdges() + " edges, too many to sort.");
+			}
+			
+			long[] edges = new long[(int) graph.getNumEdges()];
+			int n = 0;
+			
+			for (int source: graph.getVertices()) {
+				
+				if (newIds[source] < 0) {
+					newIds[source] = numVertices++;
+				}
+				
+				for (int target: graph.getNeighbors(source)) {
+					
+					if (newIds[target] < 0) {
+						newIds[target] = numVertices++;
+					}
+					
+					edges[n++] = edge(newIds[source], newIds[target]);
+				}
+			}
+			
+			writeSnapshot(edges, n, t, writer);
+			numEdges += n;
+			
+		}
+		
+		dictionary.writeToFile(mappingPath + ".vertices", newIds);
+		
+		try (BufferedWriter mappingWriter = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(mappingPath + ".timestamps"), "utf-8"))) {
+			
+			for (int t = 0; t < timestamps.length; t++) {
+				mappingWriter.write(t + "," + timestamps[t]);
+				mappingWriter.newLine();
+			}
+			
+		}
+		
+		this.logger.info("Number of vertices is {}, snapshots {}, edges {}.", numVertices, numSnapshots, numEdges);
+		this.logger.info("-write({})", mappingPath);
+		
+	}
+
+}
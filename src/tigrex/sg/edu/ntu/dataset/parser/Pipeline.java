@@ -0,0 +1,271 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A chain of stages, each on its own thread, linked by bounded queues so
+ * that parsing, transforming and writing overlap while the memory held
+ * between two stages stays bounded.
+ * 
+ * Items are passed by reference and are normally batches ({@link EdgeBatch},
+ * {@link CliqueBatch}) to keep the queue hand-offs cheap. A stage must not
+ * touch an item after emitting it. If any stage fails, the others are
+ * interrupted, the sink is aborted instead of finished, and {@link #run()}
+ * rethrows the first failure.
+ * 
+ * <pre>
+ * Pipeline.from("growth", PipelineSources.growth(path, converter))
+ *         .then("renumber", PipelineStages.renumber(mappingPath, null))
+ *         .to("write", PipelineStages.edgeFile(outputPath, 3))
+ *         .run();
+ * </pre>
+ *
+ */
+public class Pipeline {
+	
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+	
+	private static final Object END = new Object();
+	
+	/**
+	 * Hands an item to the next stage, blocking while its queue is full.
+	 */
+	public interface Emitter<T> {
+		void emit(T item) throws InterruptedException;
+	}
+	
+	public interface Source<O> {
+		void run(Emitter<O> out) throws IOException, InterruptedException;
+	}
+	
+	public interface Stage<I, O> {
+		
+		void process(I item, Emitter<O> out) throws IOException, InterruptedException;
+		
+		/**
+		 * Called once the previous stage has finished, e.g. to emit what was accumulated.
+		 */
+		default void finish(Emitter<O> out) throws IOException, InterruptedException {
+		}
+	}
+	
+	public interface Sink<I> {
+		
+		void accept(I item) throws IOException, InterruptedException;
+		
+		default void finish() throws IOException {
+		}
+		
+		/**
+		 * Called instead of a successful {@link #finish()} when the pipeline
+		 * fails, e.g. to close and delete a partial output.
+		 */
+		default void abort() {
+		}
+	}
+	
+	/**
+	 * Collects the stages of a pipeline whose last stage emits T.
+	 */
+	public static class Builder<T> {
+		
+		private final List<String> names;
+		private final List<Object> steps;
+		
+		private Builder(List<String> names, List<Object> steps) {
+			this.names = names;
+			this.steps = steps;
+		}
+		
+		public <R> Builder<R> then(String name, Stage<? super T, R> stage) {
+			this.names.add(name);
+			this.steps.add(stage);
+			return new Builder<R>(this.names, this.steps);
+		}
+		
+		public Pipeline to(String name, Sink<? super T> sink) {
+			this.names.add(name);
+			this.steps.add(sink);
+			return new Pipeline(this.names, this.steps);
+		}
+	}
+	
+	private final List<String> names;
+	private final List<Object> steps;
+	
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	
+	private RunMetrics metrics = new RunMetrics("pipeline");
+	
+	final private Logger logger = LoggerFactory.getLogger(Pipeline.class);
+	
+	private Pipeline(List<String> names, List<Object> steps) {
+		this.names = names;
+		this.steps = steps;
+	}
+	
+	public static <O> Builder<O> from(String name, Source<O> source) {
+		
+		List<String> names = new ArrayList<String>();
+		List<Object> steps = new ArrayList<Object>();
+		names.add(name);
+		steps.add(source);
+		
+		return new Builder<O>(names, steps);
+	}
+	
+	/**
+	 * @param queueCapacity the number of items that can wait between two stages
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+	
+	/**
+	 * @param metrics receives one stage per pipeline stage, counting the records each emits (the sink: accepts)
+	 */
+	public void setMetrics(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Runs all stages and waits for the last one to finish.
+	 */
+	public void run() throws IOException {
+		
+		this.logger.info("+run() with stages {}", this.names);
+		long start = System.currentTimeMillis();
+		
+		int numSteps = this.steps.size();
+		
+		List<BlockingQueue<Object>> queues = new ArrayList<BlockingQueue<Object>>();
+		for (int i = 0; i < numSteps - 1; i++) {
+			queues.add(new ArrayBlockingQueue<Object>(this.queueCapacity));
+		}
+		
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] threads = new Thread[numSteps];
+		
+		for (int i = 0; i < numSteps; i++) {
+			
+			Object step = this.steps.get(i);
+			String name = this.names.get(i);
+			BlockingQueue<Object> in = i > 0 ? queues.get(i - 1) : null;
+			BlockingQueue<Object> out = i < numSteps - 1 ? queues.get(i) : null;
+			
+			// Registered in pipeline order, started when the thread starts
+			StageMetrics stage = this.metrics.stage(name);
+			
+			threads[i] = new Thread(() -> {
+				try {
+					runStep(step, in, out, stage);
+					stage.finish();
+					this.logger.debug("Stage {} done in {} seconds.", name, stage.getElapsedSeconds());
+				} catch (Throwable e) {
+					// The first failure stops every stage; the others only see the interrupts
+					if (failure.compareAndSet(null, e)) {
+						this.logger.error("Stage {} failed: {}.", name, e.toString());
+						for (Thread thread: threads) {
+							thread.interrupt();
+						}
+					}
+				}
+			}, "pipeline-" + name);
+		}
+		
+		for (Thread thread: threads) {
+			thread.start();
+		}
+		
+		try {
+			for (Thread thread: threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			for (Thread thread: threads) {
+				thread.interrupt();
+			}
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the pipeline.");
+		}
+		
+		Throwable e = failure.get();
+		if (e instanceof IOException) {
+			throw (IOException) e;
+		} else if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		} else if (e != null) {
+			throw new IOException("Pipeline failed.", e);
+		}
+		
+		this.logger.info("Pipeline time: {} seconds.", (System.currentTimeMillis() - start) * 1.0 / 1000);
+		this.logger.info("-run()");
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void runStep(Object step, BlockingQueue<Object> in, BlockingQueue<Object> out, StageMetrics metrics) throws IOException, InterruptedException {
+		
+		Emitter<Object> emitter = out == null ? null : item -> {
+			metrics.addRecords(sizeOf(item));
+			out.put(item);
+		};
+		
+		if (in == null) {
+			((Source<Object>) step).run(emitter);
+			out.put(END);
+			return;
+		}
+		
+		if (out != null) {
+			Stage<Object, Object> transform = (Stage<Object, Object>) step;
+			for (Object item = in.take(); item != END; item = in.take()) {
+				transform.process(item, emitter);
+			}
+			transform.finish(emitter);
+			out.put(END);
+			return;
+		}
+		
+		Sink<Object> sink = (Sink<Object>) step;
+		boolean finished = false;
+		
+		try {
+			for (Object item = in.take(); item != END; item = in.take()) {
+				metrics.addRecords(sizeOf(item));
+				sink.accept(item);
+			}
+			sink.finish();
+			finished = true;
+		} finally {
+			if (!finished) {
+				sink.abort();
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of records in a batch, 1 for any other item
+	 */
+	private static int sizeOf(Object item) {
+		
+		if (item instanceof EdgeBatch) {
+			return ((EdgeBatch) item).size();
+		} else if (item instanceof CliqueBatch) {
+			return ((CliqueBatch) item).size();
+		}
+		
+		return 1;
+	}
+
+}
@@ -0,0 +1,180 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * {@link Pipeline} sources for the supported datasets.
+ *
+ */
+public class PipelineSources {
+	
+	/**
+	 * A source of groups whose vertex names are interned in a dictionary.
+	 */
+	public static abstract class CliqueSource implements Pipeline.Source<CliqueBatch> {
+		
+		protected final VertexDictionary dictionary = new VertexDictionary();
+		
+		protected CliqueBatch batch = new CliqueBatch(CliqueBatch.DEFAULT_CAPACITY);
+		
+		public VertexDictionary getDictionary() {
+			return this.dictionary;
+		}
+		
+		/**
+		 * @return the vertices to drop from all groups, known once the source has finished
+		 */
+		public IntHashSet getExcluded() {
+			return new IntHashSet();
+		}
+		
+		protected void add(int timestamp, List<String> names, Pipeline.Emitter<CliqueBatch> out) throws InterruptedException {
+			
+			IntHashSet group = new IntHashSet(names.size());
+			for (String name: names) {
+				group.add(this.dictionary.getOrAdd(name));
+			}
+			
+			this.batch.add(timestamp, group.toArray());
+			
+			if (this.batch.isFull()) {
+				out.emit(this.batch);
+				this.batch = new CliqueBatch(CliqueBatch.DEFAULT_CAPACITY);
+			}
+		}
+		
+		protected void flush(Pipeline.Emitter<CliqueBatch> out) throws InterruptedException {
+			
+			if (!this.batch.isEmpty()) {
+				out.emit(this.batch);
+				this.batch = new CliqueBatch(CliqueBatch.DEFAULT_CAPACITY);
+			}
+		}
+	}
+	
+	/**
+	 * Co-author groups of the dblp XML per year, see {@link DblpPreprocessor}.
+	 */
+	public static class DblpSource extends CliqueSource {
+		
+		private final String path;
+		private final DblpXmlReader reader;
+		
+		public DblpSource(String path, String dtdPath) {
+			this.path = path;
+			this.reader = new DblpXmlReader(dtdPath);
+		}
+		
+		@Override
+		public void run(Pipeline.Emitter<CliqueBatch> out) throws IOException, InterruptedException {
+			
+			// we need to raise entityExpansionLimit because the dblp.xml has millions of entities
+			System.setProperty("entityExpansionLimit", "10000000");
+			
+			try {
+				this.reader.read(this.path, (key, year, names) -> {
+					try {
+						this.add(year, names, out);
+					} catch (InterruptedException e) {
+						// The handler cannot throw checked exceptions, so unwind the parser unchecked
+						Thread.currentThread().interrupt();
+						throw new CancellationException("Interrupted while emitting publications.");
+					}
+				});
+			} catch (XMLStreamException e) {
+				throw new IOException("Cannot parse XML: " + e.getMessage(), e);
+			} catch (CancellationException e) {
+				throw new InterruptedIOException(e.getMessage());
+			}
+			
+			this.flush(out);
+		}
+		
+		/**
+		 * @return the ids of the names on disambiguation pages
+		 */
+		@Override
+		public IntHashSet getExcluded() {
+			
+			IntHashSet disambiguations = new IntHashSet();
+			for (String name: this.reader.getDisambiguations()) {
+				int id = this.dictionary.get(name);
+				if (id >= 0) {
+					disambiguations.add(id);
+				}
+			}
+			
+			return disambiguations;
+		}
+	}
+	
+	/**
+	 * Casts of the Kaggle IMDb movie CSV per year, see {@link ImdbPreprocessor}.
+	 */
+	public static class ImdbSource extends CliqueSource {
+		
+		private final String path;
+		
+		public ImdbSource(String path) {
+			this.path = path;
+		}
+		
+		@Override
+		public void run(Pipeline.Emitter<CliqueBatch> out) throws IOException, InterruptedException {
+			
+			try (Reader in = new InputStreamReader(InputFiles.open(this.path), StandardCharsets.UTF_8)) {
+				
+				CsvTokenizer tokenizer = new CsvTokenizer(in);
+				List<String> names = new ArrayList<String>();
+				
+				// Skip header
+				tokenizer.next();
+				
+				while (tokenizer.next()) {
+					
+					if (tokenizer.getNumFields() != 12) {
+						throw new IOException("Number of elements is " + tokenizer.getNumFields() + ", expected 12: " + tokenizer.getRecord());
+					}
+					
+					names.clear();
+					tokenizer.split(5, ',', names);
+					
+					this.add(tokenizer.getInt(6), names, out);
+				}
+			}
+			
+			this.flush(out);
+		}
+	}
+	
+	public static DblpSource dblp(String path, String dtdPath) {
+		return new DblpSource(path, dtdPath);
+	}
+	
+	public static ImdbSource imdb(String path) {
+		return new ImdbSource(path);
+	}
+	
+	/**
+	 * Edges of a growth file, converted as by {@link GrowthFileConverter} with raw ids and dates.
+	 */
+	public static Pipeline.Source<EdgeBatch> growth(String path, GrowthFileConverter converter) {
+		
+		return out -> {
+			try (MappedLineScanner scanner = new MappedLineScanner(path);
+					EdgeBatchWriter writer = new EdgeBatchWriter(out, 3)) {
+				converter.convert(scanner, writer);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,258 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Pipeline} transforms and sinks.
+ * 
+ * Clique expansion, renumbering and deletions need all of their input before
+ * they can emit anything; they collect it in memory or on disk and emit in
+ * {@link Pipeline.Stage#finish}.
+ *
+ */
+public class PipelineStages {
+	
+	/**
+	 * Expands the groups into per-snapshot cliques and emits them normalized
+	 * as by {@link NormalizedTegWriter}, with the mappings written to
+	 * "mappingPath.vertices" and "mappingPath.timestamps".
+	 */
+	public static Pipeline.Stage<CliqueBatch, EdgeBatch> cliqueExpand(PipelineSources.CliqueSource source, String mappingPath) {
+		
+		return new Pipeline.Stage<CliqueBatch, EdgeBatch>() {
+			
+			private final Map<Integer, List<int[]>> groups = new HashMap<Integer, List<int[]>>();
+			
+			@Override
+			public void process(CliqueBatch batch, Pipeline.Emitter<EdgeBatch> out) {
+				
+				for (int i = 0; i < batch.size(); i++) {
+					List<int[]> snapshot = this.groups.get(batch.getTimestamp(i));
+					if (snapshot == null) {
+						snapshot = new ArrayList<int[]>();
+						this.groups.put(batch.getTimestamp(i), snapshot);
+					}
+					snapshot.add(batch.getGroup(i));
+				}
+			}
+			
+			@Override
+			public void finish(Pipeline.Emitter<EdgeBatch> out) throws IOException {
+				
+				// The source has finished, so its exclusions are complete
+				IntHashSet excluded = source.getExcluded();
+				
+				if (!excluded.isEmpty()) {
+					for (List<int[]> snapshot: this.groups.values()) {
+						for (int g = 0; g < snapshot.size(); g++) {
+							int[] group = snapshot.get(g);
+							int n = 0;
+							for (int vertex: group) {
+								if (!excluded.contains(vertex)) {
+									group[n++] = vertex;
+								}
+							}
+							if (n < group.length) {
+								snapshot.set(g, Arrays.copyOf(group, n));
+							}
+						}
+					}
+				}
+				
+				Map<Integer, SnapshotGraph> snapshots = new CliqueExpander().expand(this.groups);
+				this.groups.clear();
+				
+				try (EdgeBatchWriter writer = new EdgeBatchWriter(out, 3)) {
+					new NormalizedTegWriter().write(snapshots, source.getDictionary(), writer, mappingPath);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * The pass of a spilling stage over its complete input.
+	 */
+	private interface SecondPass {
+		
+		/**
+		 * @param rawPath the binary scratch file holding the input edges
+		 * @param writer emits the output edges, with the columns of the input
+		 */
+		void run(String rawPath, EdgeBatchWriter writer) throws IOException;
+	}
+	
+	/**
+	 * Spills the input edges to a binary scratch file, runs the second pass
+	 * over it once the input is complete and deletes it.
+	 */
+	private static Pipeline.Stage<EdgeBatch, EdgeBatch> spilling(File scratchDirectory, SecondPass secondPass) {
+		
+		return new Pipeline.Stage<EdgeBatch, EdgeBatch>() {
+			
+			private File raw;
+			private TemporalEdgeWriter rawWriter;
+			private int columns = 3;
+			
+			@Override
+			public void process(EdgeBatch batch, Pipeline.Emitter<EdgeBatch> out) throws IOException {
+				
+				if (this.rawWriter == null) {
+					this.columns = batch.getColumns();
+					this.raw = File.createTempFile("raw", TemporalEdgeWriter.BINARY_SUFFIX, scratchDirectory);
+					this.raw.deleteOnExit();
+					this.rawWriter = TemporalEdgeWriter.open(this.raw.getPath(), this.columns);
+				}
+				
+				batch.writeTo(this.rawWriter);
+			}
+			
+			@Override
+			public void finish(Pipeline.Emitter<EdgeBatch> out) throws IOException {
+				
+				if (this.rawWriter == null) {
+					return;
+				}
+				
+				try {
+					
+					this.rawWriter.close();
+					
+					try (EdgeBatchWriter writer = new EdgeBatchWriter(out, this.columns)) {
+						secondPass.run(this.raw.getPath(), writer);
+					}
+					
+				} finally {
+					this.raw.delete();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Renumbers vertices and timestamps as by {@link Renumberer}, spilling the
+	 * raw edges to a scratch file between its two passes.
+	 */
+	public static Pipeline.Stage<EdgeBatch, EdgeBatch> renumber(String mappingPath, File scratchDirectory) {
+		
+		return spilling(scratchDirectory, (rawPath, writer) -> {
+			
+			Renumberer renumberer = new Renumberer();
+			renumberer.setScratchDirectory(scratchDirectory);
+			renumberer.renumber(rawPath, writer, mappingPath);
+		});
+	}
+	
+	/**
+	 * Collapses raw timestamps into coarser snapshots as by {@link TimeBucketer},
+	 * spilling the raw edges to a scratch file first, since equal-count windows
+	 * can only be fitted once all timestamps are known.
+	 */
+	public static Pipeline.Stage<EdgeBatch, EdgeBatch> bucket(TimeBucketing bucketing, long memoryBudget, File scratchDirectory) {
+		
+		return spilling(scratchDirectory, (rawPath, writer) -> {
+			
+			TimeBucketer bucketer = new TimeBucketer(bucketing);
+			bucketer.setMemoryBudget(memoryBudget);
+			bucketer.setScratchDirectory(scratchDirectory);
+			bucketer.bucket(rawPath, writer);
+		});
+	}
+	
+	/**
+	 * Generates end times for normalized 3-column edges, sorting them on disk
+	 * within the memory budget first, see {@link StreamingDeletionGenerator}.
+	 */
+	public static Pipeline.Stage<EdgeBatch, EdgeBatch> deletions(DeletionModel model, int seed, long memoryBudget, File scratchDirectory) {
+		
+		return new Pipeline.Stage<EdgeBatch, EdgeBatch>() {
+			
+			private final ExternalEdgeSorter sorter = new ExternalEdgeSorter(3, memoryBudget, scratchDirectory);
+			
+			@Override
+			public void process(EdgeBatch batch, Pipeline.Emitter<EdgeBatch> out) throws IOException {
+				batch.writeTo(this.sorter);
+			}
+			
+			@Override
+			public void finish(Pipeline.Emitter<EdgeBatch> out) throws IOException {
+				
+				File sorted = File.createTempFile("sorted", TemporalEdgeWriter.BINARY_SUFFIX, scratchDirectory);
+				sorted.deleteOnExit();
+				
+				try {
+					
+					try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(sorted.getPath(), 3)) {
+						this.sorter.writeTo(writer);
+					} finally {
+						this.sorter.close();
+					}
+					
+					// The binary header holds one past the largest timestamp
+					try (TemporalEdgeReader reader = TemporalEdgeReader.open(sorted.getPath());
+							EdgeBatchWriter writer = new EdgeBatchWriter(out, 4)) {
+						new StreamingDeletionGenerator(model, seed).generate(reader, reader.getNumSnapshots(), writer);
+					}
+					
+				} finally {
+					sorted.delete();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Writes the edges to a text or binary (".bin") file, which is deleted
+	 * again if the pipeline fails.
+	 */
+	public static Pipeline.Sink<EdgeBatch> edgeFile(String path, int columns) {
+		
+		return new Pipeline.Sink<EdgeBatch>() {
+			
+			private TemporalEdgeWriter writer;
+			
+			@Override
+			public void accept(EdgeBatch batch) throws IOException {
+				
+				if (this.writer == null) {
+					this.writer = TemporalEdgeWriter.open(path, columns);
+				}
+				
+				batch.writeTo(this.writer);
+			}
+			
+			@Override
+			public void finish() throws IOException {
+				
+				if (this.writer == null) {
+					this.writer = TemporalEdgeWriter.open(path, columns);
+				}
+				
+				this.writer.close();
+			}
+			
+			@Override
+			public void abort() {
+				
+				if (this.writer == null) {
+					return;
+				}
+				
+				try {
+					this.writer.close();
+				} catch (IOException e) {
+					// The partial output is deleted anyway
+				}
+				
+				new File(path).delete();
+				new File(path + BlockGzipTemporalEdgeWriter.INDEX_SUFFIX).delete();
+			}
+		};
+	}
+
+}
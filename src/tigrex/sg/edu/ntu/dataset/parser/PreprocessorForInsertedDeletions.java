@@ -1,21 +1,12 @@
 package tigrex.sg.edu.ntu.dataset.parser;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
-import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,188 +16,261 @@ public class PreprocessorForInsertedDeletions {
 	private int numVertices;
 	private int numSnapshots;
 	
-	private List<List<TemporalOutgoingEdge>> condensedGraph;
+	private CondensedGraph condensedGraph;
+	
+	private IntColumn.Storage storage = IntColumn.Storage.HEAP;
+	private File scratchDirectory;
+	
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	
+	private DeletionModel deletionModel = DeletionModel.uniform();
+	
+	private RunMetrics metrics = new RunMetrics("deletions");
+	
+	private StageMetrics deletionMetrics;
 	
 	final private Logger logger = LoggerFactory.getLogger(PreprocessorForInsertedDeletions.class);
 	
+	/**
+	 * Keeps the edge columns off the heap, e.g. for graphs above 2^31 edges.
+	 * 
+	 * @param scratchDirectory where MAPPED storage puts its files, null for the default temporary directory
+	 */
+	public void setStorage(IntColumn.Storage storage, File scratchDirectory) {
+		this.storage = storage;
+		this.scratchDirectory = scratchDirectory;
+	}
+	
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+	
+	public void setDeletionModel(DeletionModel deletionModel) {
+		this.deletionModel = deletionModel;
+	}
+	
+	public RunMetrics getMetrics() {
+		return this.metrics;
+	}
+	
 	public void process(String path) {
+		this.process(path, path + ".deletions");
+	}
+	
+	/**
+	 * @param path a text or binary temporal edge file with normalized ids
+	 * @param outputPath the ".deletions" output, binary if it ends with ".bin"
+	 */
+	public void process(String path, String outputPath) {
 		this.constructGraph(path);
 		this.generateDeletions(0);
-		this.writeEdgesToFile(path + ".deletions");
+		this.writeEdgesToFile(outputPath);
+		
+		try {
+			this.condensedGraph.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
-	private void constructGraph(String path) {
-
-		logger.debug("+constructGraph({})", path);
+	/**
+	 * Writes the deletions of an input already sorted by source in one pass,
+	 * without building the condensed graph. Unlike {@link #process(String, String)},
+	 * a repeated (source, target) pair is only rejected right after its first
+	 * occurrence; use {@link #processExternal(String, String, long)} for inputs
+	 * that may contain duplicates.
+	 * 
+	 * @see StreamingDeletionGenerator
+	 */
+	public void processSorted(String path, String outputPath) {
 		
-		Set<Integer> vertices = new HashSet<Integer>();
-		Set<Integer> timestamps = new HashSet<Integer>();
+		StageMetrics stage = this.metrics.stage("streaming");
 		
-		Map<Integer, Map<Integer, Integer>> condensed = new HashMap<Integer, Map<Integer, Integer>>() ;
+		try {
+			stage.addRecords(new StreamingDeletionGenerator(this.deletionModel, 0).generate(path, outputPath));
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			System.exit(1);
+		}
 		
-		try (BufferedReader br = new BufferedReader(new FileReader(path))) {
-		    String line;
-		    String[] parts;
-
-		    int numLines = 0;
-		    
-		    while ((line = br.readLine()) != null) {
-		    	
-		    	numLines++;
-		    	if (numLines % 1000000 == 0) {
-					logger.debug("Reading line {}...", numLines);
-				}
-		    	
-		    	parts = line.split(",");
-		    	int source = Integer.valueOf(parts[0]);
-		    	int target = Integer.valueOf(parts[1]);
-		    	int timestamp = Integer.valueOf(parts[2]);
-		    	
-		    	vertices.add(source);
-		    	vertices.add(target);
-		    	timestamps.add(timestamp);
-		    	
-		    	// Update condensedGraph
-		    	if (condensed.containsKey(source)) {
-		    		
-		    		Map<Integer, Integer> outgoingEdges = condensed.get(source);
-		    		
-		    		if (outgoingEdges.containsKey(target)) {
-		    			logger.error("Duplicate edges found ({}, {}), with timestamps {}, {}.", source, target, timestamp, outgoingEdges.get(target));
-		    			System.exit(1);
-		    		} else {
-		    			outgoingEdges.put(target, timestamp);
-		    		}
-		    		
-		    	} else {
-		    		Map<Integer, Integer> outgoingEdges = new HashMap<Integer, Integer>();
-		    		outgoingEdges.put(target, timestamp);
-		    		condensed.put(source, outgoingEdges);
-		    	}
-		    	
-		    }
-		    
-			int minVertexId = Integer.MAX_VALUE;
-			int maxVertexId = 0;
-			int minTimestamp = Integer.MAX_VALUE;
-			int maxTimestamp = 0;
-			
-			for (int v: vertices) {
-				if (v < minVertexId) {
-					minVertexId = v;
-				}
-				if (v > maxVertexId) {
-					maxVertexId = v;
-				}
-			}
-			
-			for (int t: timestamps) {
-				if (t < minTimestamp) {
-					minTimestamp = t;
-				}
-				if (t > maxTimestamp) {
-					maxTimestamp = t;
-				}
-			}
-			
-			logger.info("Number of edges is {}.", numLines);
-			logger.info("Number of vertices is {}.", vertices.size());
-			logger.info("Number of snapshots is {}.", timestamps.size());
+		stage.addBytesRead(new File(path).length());
+		stage.addBytesWritten(new File(outputPath).length());
+		stage.finish();
+	}
+	
+	/**
+	 * Writes the deletions of an unsorted input larger than the heap: the edges
+	 * are sorted and deduplicated on disk within the memory budget, then
+	 * streamed through {@link #processSorted(String, String)}.
+	 */
+	public void processExternal(String path, String outputPath, long memoryBudget) {
+		
+		File sorted = null;
+		StageMetrics stage = this.metrics.stage("sort");
+		
+		try {
 			
-			if (minVertexId != 0) {
-				logger.error("Min vertex id is {}.", minVertexId);
-			}
+			sorted = File.createTempFile("sorted", TemporalEdgeWriter.BINARY_SUFFIX, this.scratchDirectory);
+			sorted.deleteOnExit();
 			
-			if (minTimestamp != 0) {
-				logger.error("Min timestamp is {}.", minTimestamp);
-			}
+			stage.addRecords(ExternalEdgeSorter.sort(path, sorted.getPath(), memoryBudget, this.scratchDirectory));
+			stage.addBytesRead(new File(path).length());
+			stage.addBytesWritten(sorted.length());
 			
-			if (maxVertexId - minVertexId + 1 != vertices.size()) {
-				logger.error("Vertex id normalization error. Max vertex id is {}.", maxVertexId);
-				System.exit(1);
-			}
+		} catch (IOException e) {
+			logger.error(e.getMessage());
+			System.exit(1);
+		}
+		
+		stage.finish();
+		
+		this.processSorted(sorted.getPath(), outputPath);
+		
+		sorted.delete();
+	}
+	
+	void constructGraph(String path) {
 
-			if (maxTimestamp - minTimestamp + 1 != timestamps.size()) {
-				logger.error("Timestamp id normalization error. Max timestamp id is {}.", maxTimestamp);
-				System.exit(1);
-			}
-			
-			this.numVertices = vertices.size();
-			this.numSnapshots = timestamps.size();
+		logger.debug("+constructGraph({})", path);
+		
+		StageMetrics stage = this.metrics.stage("construct");
+		
+		try {
 			
-			// Build array-based condensed graph
-			this.condensedGraph = new ArrayList<List<TemporalOutgoingEdge>>(condensed.size());
-			for (int i = 0; i < condensed.size(); i++) {
-				Map<Integer, Integer> outgoingEdgesMap = condensed.get(i);
-				List<TemporalOutgoingEdge> outgoingEdgesList = new ArrayList<TemporalOutgoingEdge>(outgoingEdgesMap.size());
-				for (Integer target: outgoingEdgesMap.keySet()) {
-					int timestamp = outgoingEdgesMap.get(target);
-					outgoingEdgesList.add(new TemporalOutgoingEdge(target, timestamp));
-				}
-				
-				Collections.sort(outgoingEdgesList);
-				this.condensedGraph.add(outgoingEdgesList);
-			}
+			this.condensedGraph = CondensedGraph.read(path, this.storage, this.scratchDirectory);
 			
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
+			return;
 		} catch (IOException e) {
-			e.printStackTrace();
-		} 
+			logger.error(e.getMessage());
+			System.exit(1);
+		}
+		
+		CondensedGraph graph = this.condensedGraph;
+		
+		stage.addRecords(graph.getNumEdges());
+		stage.addBytesRead(new File(path).length());
+		stage.finish();
+		
+		logger.info("Number of edges is {}.", graph.getNumEdges());
+		logger.info("Number of vertices is {}.", graph.getNumVertices());
+		logger.info("Number of snapshots is {}.", graph.getNumSnapshots());
+		
+		if (graph.getMinVertexId() != 0) {
+			logger.error("Min vertex id is {}.", graph.getMinVertexId());
+		}
+		
+		if (graph.getMinTimestamp() != 0) {
+			logger.error("Min timestamp is {}.", graph.getMinTimestamp());
+		}
+		
+		if (graph.getMaxVertexId() - graph.getMinVertexId() + 1 != graph.getNumVertices()) {
+			logger.error("Vertex id normalization error. Max vertex id is {}.", graph.getMaxVertexId());
+			System.exit(1);
+		}
+
+		if (graph.getMaxTimestamp() - graph.getMinTimestamp() + 1 != graph.getNumSnapshots()) {
+			logger.error("Timestamp id normalization error. Max timestamp id is {}.", graph.getMaxTimestamp());
+			System.exit(1);
+		}
+		
+		this.numVertices = graph.getNumVertices();
+		this.numSnapshots = graph.getNumSnapshots();
 		
 		logger.debug("-constructGraph({})", path);
 
 	}
 	
-	private void generateDeletions(int seed) {
+	/**
+	 * Draws the end time of every edge from the deletion model.
+	 * 
+	 * Vertices are cut into fixed blocks of DeletionModel.VERTEX_BLOCK_SIZE. Each block gets
+	 * its own generator, split from the seed in block order, and the blocks are
+	 * processed in parallel. The result only depends on the seed, not on the
+	 * number of threads or the order in which blocks run.
+	 */
+	void generateDeletions(int seed) {
 		
-		this.logger.info("+generateDeletions()");
+		this.logger.info("+generateDeletions() on {} threads", this.parallelism);
 
-		Random rand = new Random(seed);
+		final int numBlocks = (this.numVertices + DeletionModel.VERTEX_BLOCK_SIZE - 1) / DeletionModel.VERTEX_BLOCK_SIZE;
 		
-		for (int source = 0; source < this.numVertices; source++) {
-			List<TemporalOutgoingEdge> outgoingEdges = this.condensedGraph.get(source);
-			
-			for (TemporalOutgoingEdge e: outgoingEdges) {
-				int endTime = e.getStartTime() + rand.nextInt(this.numSnapshots - e.getStartTime());
-				e.setEndTime(endTime);
-			}
+		SplittableRandom rand = new SplittableRandom(seed);
+		final SplittableRandom[] blockRands = new SplittableRandom[numBlocks];
+		for (int block = 0; block < numBlocks; block++) {
+			blockRands[block] = rand.split();
+		}
+		
+		this.deletionMetrics = this.metrics.stage("deletions");
+		
+		ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+		try {
+			pool.submit(() -> IntStream.range(0, numBlocks).parallel().forEach(
+					block -> this.generateDeletions(block, blockRands[block]))).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating deletions.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Deletion generation failed.", e.getCause());
+		} finally {
+			pool.shutdown();
 		}
 		
+		this.deletionMetrics.finish();
+		
 		this.logger.info("-generateDeletions()");
 
 		
 	}
 	
-	private void writeEdgesToFile(String path) {
+	private void generateDeletions(int block, SplittableRandom rand) {
+		
+		int end = Math.min(this.numVertices, (block + 1) * DeletionModel.VERTEX_BLOCK_SIZE);
+		
+		for (int source = block * DeletionModel.VERTEX_BLOCK_SIZE; source < end; source++) {
+			
+			for (long e = this.condensedGraph.getBegin(source); e < this.condensedGraph.getEnd(source); e++) {
+				int startTime = this.condensedGraph.getStartTime(e);
+				int endTime = this.deletionModel.endTime(startTime, this.numSnapshots, rand);
+				this.condensedGraph.setEndTime(e, endTime);
+			}
+		}
+		
+		this.deletionMetrics.addRecords(this.condensedGraph.getEnd(end - 1) - this.condensedGraph.getBegin(block * DeletionModel.VERTEX_BLOCK_SIZE));
+		
+	}
+	
+	void writeEdgesToFile(String path) {
 		
 		this.logger.info("+writeEdgesToFile()");
+		
+		StageMetrics stage = this.metrics.stage("write");
 
 		try {
-			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
-					new FileOutputStream(path), "utf-8"));
+			TemporalEdgeWriter writer = TemporalEdgeWriter.open(path, 4);
 			
-			for (int source = 0; source < this.condensedGraph.size(); source++) {
-				List<TemporalOutgoingEdge> outgoingEdges = this.condensedGraph.get(source);
+			for (int source = 0; source < this.condensedGraph.getNumRows(); source++) {
 				
-				for (TemporalOutgoingEdge e: outgoingEdges) {
+				for (long e = this.condensedGraph.getBegin(source); e < this.condensedGraph.getEnd(source); e++) {
 					
-					writer.write(source + "," + e.getTarget() + "," + e.getStartTime() + "," + e.getEndTime());
-					writer.newLine();
+					writer.write(source, this.condensedGraph.getTarget(e), this.condensedGraph.getStartTime(e), this.condensedGraph.getEndTime(e));
 				}
 				
+				stage.addRecords(this.condensedGraph.getEnd(source) - this.condensedGraph.getBegin(source));
 			}
 			
 			writer.close();
 			
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 		
+		stage.addBytesWritten(new File(path).length());
+		stage.finish();
+		
 		this.logger.info("-writeEdgesToFile()");
 	}
 		
@@ -219,7 +283,14 @@ public class PreprocessorForInsertedDeletions {
 //		String path = "raw/wikipedia-growth.txt.teg.sim";
 		String path = "raw/youtube-d-growth.txt.teg.sim";
 
+		processor.getMetrics().startReporting(60);
 		processor.process(path);
+		
+		try {
+			processor.getMetrics().writeSummary(path + ".deletions.metrics.json");
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 
 	}
 		
@@ -0,0 +1,247 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renumbers the raw vertex ids and timestamps of a temporal edge file to
+ * 0..n-1 and 0..T-1 in two passes, writing the normalized ".sim" file that
+ * {@link PreprocessorForInsertedDeletions} expects.
+ * 
+ * The first pass collects the distinct ids and timestamps, the second maps
+ * every edge through their sorted ranks, so both keep their original order.
+ * When the distinct vertex ids do not fit in the memory budget they are
+ * sorted on disk by {@link ExternalEdgeSorter} and looked up in a
+ * memory-mapped column instead. The mappings are written next to the output
+ * as "path.vertices" ("id,raw id") and "path.timestamps" ("id,raw timestamp").
+ *
+ */
+public class Renumberer {
+	
+	// An IntHashSet takes up to 16 bytes per id at its lowest load factor
+	private static final int BYTES_PER_ID = 16;
+	
+	private long memoryBudget = ExternalEdgeSorter.DEFAULT_MEMORY_BUDGET;
+	
+	private File scratchDirectory;
+	
+	final private Logger logger = LoggerFactory.getLogger(Renumberer.class);
+	
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * @param scratchDirectory where spilled ids go, or null for the default temporary directory
+	 */
+	public void setScratchDirectory(File scratchDirectory) {
+		this.scratchDirectory = scratchDirectory;
+	}
+	
+	/**
+	 * @param path a 3- or 4-column temporal edge file with raw ids, text or binary
+	 * @param outputPath the renumbered output, binary if it ends with ".bin"
+	 * @return the number of edges written
+	 */
+	public long renumber(String path, String outputPath) throws IOException {
+		
+		try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(outputPath, columnsOf(path))) {
+			return this.renumber(path, writer, outputPath);
+		}
+	}
+	
+	/**
+	 * Writes the renumbered edges to the given writer and the mappings to
+	 * "mappingPath.vertices" and "mappingPath.timestamps".
+	 */
+	public long renumber(String path, TemporalEdgeWriter writer, String mappingPath) throws IOException {
+		
+		this.logger.info("+renumber({})", path);
+		
+		IntHashSet timestampSet = new IntHashSet();
+		
+		try (IntColumn vertices = this.collect(path, timestampSet)) {
+			
+			int[] timestamps = timestampSet.toArray();
+			Arrays.sort(timestamps);
+			
+			this.logger.info("Number of vertices is {}, snapshots {}.", vertices.size(), timestamps.length);
+			
+			long numEdges = 0;
+			
+			try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+				
+				while (reader.next()) {
+					
+					int source = rank(vertices, reader.getSource());
+					int target = rank(vertices, reader.getTarget());
+					int startTime = Arrays.binarySearch(timestamps, reader.getStartTime());
+					
+					if (reader.getColumns() == 3) {
+						writer.write(source, target, startTime);
+					} else {
+						int endTime = reader.getEndTime() < 0 ? reader.getEndTime() : Arrays.binarySearch(timestamps, reader.getEndTime());
+						writer.write(source, target, startTime, endTime);
+					}
+					
+					numEdges++;
+					
+					if (numEdges % 10000000 == 0) {
+						this.logger.debug("Renumbering edge {}...", numEdges);
+					}
+				}
+			}
+			
+			try (BufferedWriter mappingWriter = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(mappingPath + ".vertices"), "utf-8"))) {
+				
+				for (long v = 0; v < vertices.size(); v++) {
+					mappingWriter.write(v + "," + vertices.get(v));
+					mappingWriter.newLine();
+				}
+				
+			}
+			
+			try (BufferedWriter mappingWriter = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(mappingPath + ".timestamps"), "utf-8"))) {
+				
+				for (int t = 0; t < timestamps.length; t++) {
+					mappingWriter.write(t + "," + timestamps[t]);
+					mappingWriter.newLine();
+				}
+				
+			}
+			
+			this.logger.info("Number of edges is {}.", numEdges);
+			this.logger.info("-renumber({})", path);
+			
+			return numEdges;
+		}
+	}
+	
+	/**
+	 * @return the number of columns of an edge file, 3 if it is empty
+	 */
+	private static int columnsOf(String path) throws IOException {
+		
+		// Text files only know their number of columns once a line has been read
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			reader.next();
+			return reader.getColumns() > 0 ? reader.getColumns() : 3;
+		}
+	}
+	
+	/**
+	 * First pass: adds the timestamps to the given set and returns the sorted distinct vertex ids.
+	 */
+	private IntColumn collect(String path, IntHashSet timestamps) throws IOException {
+		
+		long maxInMemory = this.memoryBudget / BYTES_PER_ID;
+		
+		IntHashSet ids = new IntHashSet();
+		ExternalEdgeSorter sorter = null;
+		
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			
+			while (reader.next()) {
+				
+				if (sorter == null) {
+					
+					ids.add(reader.getSource());
+					ids.add(reader.getTarget());
+					
+					if (ids.size() > maxInMemory) {
+						
+						this.logger.info("More than {} vertices, sorting ids on disk.", maxInMemory);
+						
+						// Ids are sorted as (id, 0, 0) edges that are distinct on the id alone
+						sorter = new ExternalEdgeSorter(3, this.memoryBudget, this.scratchDirectory);
+						sorter.setDistinctColumns(1);
+						for (int id: ids.toArray()) {
+							sorter.write(id, 0, 0);
+						}
+						ids = null;
+					}
+					
+				} else {
+					sorter.write(reader.getSource(), 0, 0);
+					sorter.write(reader.getTarget(), 0, 0);
+				}
+				
+				timestamps.add(reader.getStartTime());
+				if (reader.getColumns() == 4 && reader.getEndTime() >= 0) {
+					timestamps.add(reader.getEndTime());
+				}
+			}
+		}
+		
+		if (sorter == null) {
+			
+			int[] sorted = ids.toArray();
+			Arrays.sort(sorted);
+			
+			IntColumn vertices = IntColumn.allocate(IntColumn.Storage.HEAP, sorted.length, null);
+			for (int v = 0; v < sorted.length; v++) {
+				vertices.set(v, sorted[v]);
+			}
+			
+			return vertices;
+		}
+		
+		File sortedIds = File.createTempFile("vertices", TemporalEdgeWriter.BINARY_SUFFIX, this.scratchDirectory);
+		sortedIds.deleteOnExit();
+		
+		try {
+			
+			try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(sortedIds.getPath(), 3)) {
+				sorter.writeTo(writer);
+			} finally {
+				sorter.close();
+			}
+			
+			try (TemporalEdgeReader reader = TemporalEdgeReader.open(sortedIds.getPath())) {
+				
+				IntColumn vertices = IntColumn.allocate(IntColumn.Storage.MAPPED, reader.getNumEdges(), this.scratchDirectory);
+				for (long v = 0; reader.next(); v++) {
+					vertices.set(v, reader.getSource());
+				}
+				
+				return vertices;
+			}
+			
+		} finally {
+			sortedIds.delete();
+		}
+	}
+	
+	/**
+	 * @return the index of the id in the sorted column
+	 */
+	private static int rank(IntColumn ids, int id) throws IOException {
+		
+		long low = 0;
+		long high = ids.size() - 1;
+		
+		while (low <= high) {
+			long mid = (low + high) >>> 1;
+			int value = ids.get(mid);
+			if (value < id) {
+				low = mid + 1;
+			} else if (value > id) {
+				high = mid - 1;
+			} else {
+				return (int) mid;
+			}
+		}
+		
+		throw new IOException("Vertex " + id + " was not seen in the first pass.");
+	}
+
+}
@@ -0,0 +1,272 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the {@link StageMetrics} of a preprocessing run, logs the running
+ * stages periodically and writes a JSON summary at the end.
+ * 
+ * The periodic line shows, per running stage, the records so far and their
+ * rate, so a stalled stage stands out without a profiler.
+ * 
+ * While reporting, the heap in use is also sampled every
+ * SAMPLE_PERIOD_MILLIS, and attributed to the run and to every running
+ * stage; otherwise only at the start and finish of stages. Peak usage of the
+ * JVM's memory pools is never reset, since other runs may share the JVM, so
+ * the summary gives the heap in use when the run started as a baseline. Its
+ * pool-based figure sums the peaks of pools reached at different times,
+ * possibly before the run, and is only an upper bound.
+ *
+ */
+public class RunMetrics {
+	
+	private static final long MB = 1 << 20;
+	
+	static final long SAMPLE_PERIOD_MILLIS = 100;
+	
+	private final String name;
+	
+	private final List<StageMetrics> stages;
+	
+	private final long startNanos;
+	private final long startGcMillis;
+	
+	private final long startHeap;
+	private final AtomicLong peakHeap = new AtomicLong();
+	
+	private ScheduledExecutorService reporter;
+	
+	final private Logger logger = LoggerFactory.getLogger(RunMetrics.class);
+	
+	public RunMetrics(String name) {
+		
+		this.name = name;
+		this.stages = new ArrayList<StageMetrics>();
+		this.startNanos = System.nanoTime();
+		this.startGcMillis = getGcMillis();
+		this.startHeap = getUsedHeap();
+		this.peakHeap.set(this.startHeap);
+	}
+	
+	/**
+	 * Starts and registers a new stage.
+	 */
+	public synchronized StageMetrics stage(String stageName) {
+		
+		StageMetrics stage = new StageMetrics(stageName);
+		this.stages.add(stage);
+		
+		return stage;
+	}
+	
+	public synchronized List<StageMetrics> getStages() {
+		return new ArrayList<StageMetrics>(this.stages);
+	}
+	
+	/**
+	 * Logs a progress line for the running stages every period, and samples
+	 * the heap every SAMPLE_PERIOD_MILLIS, on a daemon thread.
+	 */
+	public synchronized void startReporting(long periodSeconds) {
+		
+		if (this.reporter != null) {
+			return;
+		}
+		
+		this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-" + this.name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.reporter.scheduleAtFixedRate(this::sampleHeap, 0, SAMPLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+		this.reporter.scheduleAtFixedRate(this::report, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+	}
+	
+	public synchronized void stopReporting() {
+		
+		if (this.reporter != null) {
+			this.reporter.shutdownNow();
+			this.reporter = null;
+		}
+	}
+	
+	/**
+	 * Records the heap in use for the run and every running stage.
+	 */
+	void sampleHeap() {
+		
+		long used = getUsedHeap();
+		this.peakHeap.accumulateAndGet(used, Math::max);
+		
+		for (StageMetrics stage: this.getStages()) {
+			if (!stage.isFinished()) {
+				stage.sampleHeap(used);
+			}
+		}
+	}
+	
+	/**
+	 * @return the largest heap use sampled for the run or any of its stages
+	 */
+	public long getPeakHeap() {
+		
+		long peak = this.peakHeap.get();
+		for (StageMetrics stage: this.getStages()) {
+			peak = Math.max(peak, stage.getPeakHeap());
+		}
+		
+		return peak;
+	}
+	
+	/**
+	 * Logs one progress line per running stage.
+	 */
+	public void report() {
+		
+		this.sampleHeap();
+		
+		for (StageMetrics stage: this.getStages()) {
+			
+			if (stage.isFinished()) {
+				continue;
+			}
+			
+			this.logger.info(String.format(Locale.ROOT, "%s/%s: %d records (%.0f/s), read %d MB, written %d MB, %.1f s, heap %d MB, GC %d ms.",
+					this.name, stage.getName(), stage.getRecords(), stage.getRecordsPerSecond(),
+					stage.getBytesRead() / MB, stage.getBytesWritten() / MB, stage.getElapsedSeconds(),
+					getUsedHeap() / MB, stage.getGcMillis()));
+		}
+	}
+	
+	/**
+	 * @return the summary as a JSON object
+	 */
+	public String toJson() {
+		
+		StringBuilder json = new StringBuilder();
+		
+		json.append("{\n");
+		json.append("  \"name\": ").append(quote(this.name)).append(",\n");
+		json.append("  \"elapsedSeconds\": ").append(format((System.nanoTime() - this.startNanos) / 1e9)).append(",\n");
+		json.append("  \"startHeapBytes\": ").append(this.startHeap).append(",\n");
+		json.append("  \"peakHeapBytes\": ").append(this.getPeakHeap()).append(",\n");
+		json.append("  \"peakHeapUpperBoundBytes\": ").append(getPoolPeakHeap()).append(",\n");
+		json.append("  \"gcMillis\": ").append(getGcMillis() - this.startGcMillis).append(",\n");
+		json.append("  \"stages\": [");
+		
+		List<StageMetrics> stages = this.getStages();
+		for (int i = 0; i < stages.size(); i++) {
+			
+			StageMetrics stage = stages.get(i);
+			
+			json.append(i == 0 ? "\n" : ",\n");
+			json.append("    {\"name\": ").append(quote(stage.getName()));
+			json.append(", \"records\": ").append(stage.getRecords());
+			json.append(", \"recordsPerSecond\": ").append(format(stage.getRecordsPerSecond()));
+			json.append(", \"bytesRead\": ").append(stage.getBytesRead());
+			json.append(", \"bytesWritten\": ").append(stage.getBytesWritten());
+			json.append(", \"elapsedSeconds\": ").append(format(stage.getElapsedSeconds()));
+			json.append(", \"peakHeapBytes\": ").append(stage.getPeakHeap());
+			json.append(", \"gcMillis\": ").append(stage.getGcMillis());
+			json.append(", \"finished\": ").append(stage.isFinished());
+			json.append("}");
+		}
+		
+		json.append(stages.isEmpty() ? "]\n" : "\n  ]\n");
+		json.append("}\n");
+		
+		return json.toString();
+	}
+	
+	/**
+	 * Stops reporting, logs the stages once more and writes the JSON summary.
+	 */
+	public void writeSummary(String path) throws IOException {
+		
+		this.stopReporting();
+		
+		for (StageMetrics stage: this.getStages()) {
+			this.logger.info(String.format(Locale.ROOT, "%s/%s: %d records in %.1f s (%.0f/s), peak heap %d MB, GC %d ms.",
+					this.name, stage.getName(), stage.getRecords(), stage.getElapsedSeconds(), stage.getRecordsPerSecond(),
+					stage.getPeakHeap() / MB, stage.getGcMillis()));
+		}
+		
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(path), "utf-8"))) {
+			writer.write(this.toJson());
+		}
+	}
+	
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+	
+	private static String quote(String value) {
+		
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+		
+		return quoted.append('"').toString();
+	}
+	
+	static long getUsedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	
+	/**
+	 * @return the sum of the peak use of every heap pool since the JVM started,
+	 *         an upper bound of the peak heap use, as the pools peak at different times
+	 */
+	static long getPoolPeakHeap() {
+		
+		long peak = 0;
+		for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		
+		return peak;
+	}
+	
+	/**
+	 * @return the total time spent in all garbage collectors of the JVM
+	 */
+	static long getGcMillis() {
+		
+		long millis = 0;
+		for (GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		
+		return millis;
+	}
+
+}
@@ -0,0 +1,251 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access to the snapshots of a file written by {@link SnapshotIndexedWriter}.
+ *
+ * Only the bytes of the requested timestamps are memory-mapped and decoded.
+ *
+ * <pre>
+ * try (SnapshotFile file = new SnapshotFile(path);
+ *         TemporalEdgeReader reader = file.open(t)) {
+ *     while (reader.next()) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ */
+public class SnapshotFile implements Closeable {
+
+	private final String path;
+	private final FileChannel channel;
+
+	private final int columns;
+	private final int numVertices;
+	private final int numSnapshots;
+
+	private final int[] timestamps;
+	private final long[] offsets;
+	private final long[] firstEdges;
+	private final int[] previousSources;
+
+	public SnapshotFile(String path) throws IOException {
+
+		this.path = path;
+
+		try (DataInputStream index = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(path + SnapshotIndexedWriter.INDEX_SUFFIX)))) {
+
+			if (index.readInt() != SnapshotIndexedWriter.INDEX_MAGIC || index.readInt() != SnapshotIndexedWriter.INDEX_VERSION) {
+				throw new IOException(path + SnapshotIndexedWriter.INDEX_SUFFIX + " is not a snapshot index.");
+			}
+
+			int n = index.readInt();
+			this.timestamps = new int[n];
+			this.offsets = new long[n + 1];
+			this.firstEdges = new long[n + 1];
+			this.previousSources = new int[n];
+
+			for (int i = 0; i < n; i++) {
+				this.timestamps[i] = index.readInt();
+				this.offsets[i] = index.readLong();
+				this.firstEdges[i] = index.readLong();
+				this.previousSources[i] = index.readInt();
+			}
+
+			this.offsets[n] = index.readLong();
+			this.firstEdges[n] = index.readLong();
+		}
+
+		this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+
+		ByteBuffer header = ByteBuffer.allocate(BinaryTemporalEdgeWriter.HEADER_SIZE);
+		this.channel.read(header, 0);
+		header.flip();
+
+		if (header.remaining() < BinaryTemporalEdgeWriter.HEADER_SIZE
+				|| header.getInt() != BinaryTemporalEdgeWriter.MAGIC || header.getInt() != BinaryTemporalEdgeWriter.VERSION) {
+			this.channel.close();
+			throw new IOException("Unsupported file " + path + ".");
+		}
+
+		this.columns = header.getInt();
+		this.numVertices = header.getInt();
+		this.numSnapshots = header.getInt();
+	}
+
+	/**
+	 * @return the timestamps that have edges, in ascending order
+	 */
+	public int[] getTimestamps() {
+		return this.timestamps.clone();
+	}
+
+	public int getColumns() {
+		return this.columns;
+	}
+
+	/**
+	 * @return the number of edges of the timestamp, 0 if it has none
+	 */
+	public long getNumEdges(int timestamp) {
+
+		int i = Arrays.binarySearch(this.timestamps, timestamp);
+
+		return i < 0 ? 0 : this.firstEdges[i + 1] - this.firstEdges[i];
+	}
+
+	/**
+	 * @return the edges of one timestamp
+	 */
+	public TemporalEdgeReader open(int timestamp) throws IOException {
+		return this.open(timestamp, timestamp + 1);
+	}
+
+	/**
+	 * @return the edges with a timestamp in [from, to), in file order
+	 */
+	public TemporalEdgeReader open(int from, int to) throws IOException {
+
+		int first = lowerBound(this.timestamps, from);
+		int last = lowerBound(this.timestamps, to);
+
+		if (first >= last) {
+			return new RangeReader(null, 0, 0);
+		}
+
+		long size = this.offsets[last] - this.offsets[first];
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Timestamps [" + from + ", " + to + ") take " + size + " bytes, open a smaller range.");
+		}
+
+		MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, this.offsets[first], size);
+
+		return new RangeReader(buffer, this.firstEdges[last] - this.firstEdges[first], this.previousSources[first]);
+	}
+
+	private static int lowerBound(int[] sorted, int value) {
+
+		int i = Arrays.binarySearch(sorted, value);
+
+		return i < 0 ? -i - 1 : i;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+
+	/**
+	 * Decodes the edges of a mapped range, starting from the source stored in the index.
+	 */
+	private class RangeReader implements TemporalEdgeReader {
+
+		private final ByteBuffer buffer;
+		private final long numEdges;
+		private long numRead;
+
+		private int source;
+		private int target;
+		private int startTime;
+		private int endTime;
+
+		RangeReader(ByteBuffer buffer, long numEdges, int previousSource) {
+			this.buffer = buffer;
+			this.numEdges = numEdges;
+			this.source = previousSource;
+		}
+
+		private int readVarint() throws IOException {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+				if (!this.buffer.hasRemaining()) {
+					throw new IOException("Truncated edge " + this.numRead + " in " + SnapshotFile.this.path + ".");
+				}
+				b = this.buffer.get();
+				value |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			return value;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+
+			if (this.numRead == this.numEdges) {
+				return false;
+			}
+
+			this.source += BinaryTemporalEdgeWriter.unzigzag(this.readVarint());
+			this.target = this.readVarint();
+			this.startTime = this.readVarint();
+			this.endTime = SnapshotFile.this.columns == 4 ? this.startTime + BinaryTemporalEdgeWriter.unzigzag(this.readVarint()) : -1;
+
+			this.numRead++;
+
+			return true;
+		}
+
+		@Override
+		public int getSource() {
+			return this.source;
+		}
+
+		@Override
+		public int getTarget() {
+			return this.target;
+		}
+
+		@Override
+		public int getStartTime() {
+			return this.startTime;
+		}
+
+		@Override
+		public int getEndTime() {
+			return this.endTime;
+		}
+
+		@Override
+		public int getColumns() {
+			return SnapshotFile.this.columns;
+		}
+
+		@Override
+		public long getNumEdges() {
+			return this.numEdges;
+		}
+
+		@Override
+		public int getNumVertices() {
+			return SnapshotFile.this.numVertices;
+		}
+
+		@Override
+		public int getNumSnapshots() {
+			return SnapshotFile.this.numSnapshots;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.Arrays;
+
+/**
+ * Undirected graph of one snapshot over interned vertex ids.
+ *
+ * Every edge is stored once as a (min, max) pair packed in a long, in a
+ * sorted array without duplicates. The adjacency in both directions is only
+ * built when the graph is first read vertex by vertex, e.g. by
+ * {@link NormalizedTegWriter}.
+ *
+ */
+public class SnapshotGraph {
+
+	private long[] pairs;
+	private final int numPairs;
+
+	private int[] vertices;
+	private int[] offsets;
+	private int[] neighbors;
+
+	/**
+	 * @param pairs (min << 32 | max) pairs of non-negative ids with min < max, sorted and distinct
+	 */
+	public SnapshotGraph(long[] pairs, int numPairs) {
+		this.pairs = pairs;
+		this.numPairs = numPairs;
+	}
+
+	static long pair(int min, int max) {
+		return (long) min << 32 | max;
+	}
+
+	static int min(long pair) {
+		return (int) (pair >>> 32);
+	}
+
+	static int max(long pair) {
+		return (int) pair;
+	}
+
+	/**
+	 * Mirrors the pairs into sorted neighbor lists. Pairs are sorted by their
+	 * smaller end, so every vertex first receives its smaller neighbors, in
+	 * ascending order, then its larger ones.
+	 */
+	private void buildAdjacency() {
+
+		if (this.vertices != null) {
+			return;
+		}
+
+		int maxId = -1;
+		for (int i = 0; i < this.numPairs; i++) {
+			maxId = Math.max(maxId, max(this.pairs[i]));
+		}
+
+		int[] degrees = new int[maxId + 1];
+		int numVertices = 0;
+		for (int i = 0; i < this.numPairs; i++) {
+			if (degrees[min(this.pairs[i])]++ == 0) {
+				numVertices++;
+			}
+			if (degrees[max(this.pairs[i])]++ == 0) {
+				numVertices++;
+			}
+		}
+
+		this.vertices = new int[numVertices];
+		this.offsets = new int[numVertices + 1];
+
+		// degrees becomes the next free slot of every vertex
+		int v = 0;
+		for (int id = 0; id <= maxId; id++) {
+			if (degrees[id] > 0) {
+				this.vertices[v] = id;
+				this.offsets[v + 1] = this.offsets[v] + degrees[id];
+				degrees[id] = this.offsets[v];
+				v++;
+			}
+		}
+
+		this.neighbors = new int[2 * this.numPairs];
+		for (int i = 0; i < this.numPairs; i++) {
+			int min = min(this.pairs[i]);
+			int max = max(this.pairs[i]);
+			this.neighbors[degrees[min]++] = max;
+			this.neighbors[degrees[max]++] = min;
+		}
+
+		this.pairs = null;
+	}
+
+	/**
+	 * @return the ids of the vertices with at least one neighbor, in ascending order
+	 */
+	public int[] getVertices() {
+		this.buildAdjacency();
+		return this.vertices.clone();
+	}
+
+	/**
+	 * @return the neighbors of the vertex in ascending order, empty if it has none
+	 */
+	public int[] getNeighbors(int vertex) {
+
+		this.buildAdjacency();
+
+		int v = Arrays.binarySearch(this.vertices, vertex);
+		if (v < 0) {
+			return new int[0];
+		}
+
+		return Arrays.copyOfRange(this.neighbors, this.offsets[v], this.offsets[v + 1]);
+	}
+
+	/**
+	 * @return the number of directed edges, i.e. twice the number of undirected ones
+	 */
+	public long getNumEdges() {
+		return 2L * this.numPairs;
+	}
+
+}
@@ -0,0 +1,100 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes edges sorted by timestamp in the binary format, with an index of
+ * where every snapshot starts, "path.snapshots":
+ *
+ * <pre>
+ * int magic, int version, int numTimestamps,
+ * numTimestamps x (int timestamp, long offset, long first edge, int previous source),
+ * long end offset, long numEdges
+ * </pre>
+ *
+ * Sources are delta-encoded across snapshots, so every entry keeps the
+ * source its first edge is encoded against. The edge file itself is an
+ * ordinary binary file that any {@link TemporalEdgeReader} can read;
+ * {@link SnapshotFile} uses the index to map just the snapshots it needs.
+ *
+ */
+public class SnapshotIndexedWriter implements TemporalEdgeWriter {
+
+	public static final String INDEX_SUFFIX = ".snapshots";
+
+	static final int INDEX_MAGIC = 0x54454753;
+	static final int INDEX_VERSION = 1;
+
+	private final String path;
+	private final BinaryTemporalEdgeWriter writer;
+
+	private final ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+	private final DataOutputStream entries = new DataOutputStream(this.entryBytes);
+	private int numTimestamps;
+
+	private boolean started;
+	private int lastTimestamp;
+	private long numEdges;
+
+	public SnapshotIndexedWriter(String path, int columns) throws IOException {
+		this.path = path;
+		this.writer = new BinaryTemporalEdgeWriter(path, columns);
+	}
+
+	@Override
+	public void write(int source, int target, int timestamp) throws IOException {
+		this.mark(timestamp);
+		this.writer.write(source, target, timestamp);
+		this.numEdges++;
+	}
+
+	@Override
+	public void write(int source, int target, int startTime, int endTime) throws IOException {
+		this.mark(startTime);
+		this.writer.write(source, target, startTime, endTime);
+		this.numEdges++;
+	}
+
+	private void mark(int timestamp) throws IOException {
+
+		if (this.started && timestamp == this.lastTimestamp) {
+			return;
+		}
+
+		if (this.started && timestamp < this.lastTimestamp) {
+			throw new IllegalStateException("Edges must be sorted by timestamp, got " + timestamp + " after " + this.lastTimestamp + ".");
+		}
+
+		this.entries.writeInt(timestamp);
+		this.entries.writeLong(this.writer.getOffset());
+		this.entries.writeLong(this.numEdges);
+		this.entries.writeInt(this.writer.getPreviousSource());
+
+		this.numTimestamps++;
+		this.started = true;
+		this.lastTimestamp = timestamp;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		this.writer.close();
+
+		try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(this.path + INDEX_SUFFIX)))) {
+
+			index.writeInt(INDEX_MAGIC);
+			index.writeInt(INDEX_VERSION);
+			index.writeInt(this.numTimestamps);
+			this.entryBytes.writeTo(index);
+			index.writeLong(new File(this.path).length());
+			index.writeLong(this.numEdges);
+		}
+	}
+
+}
@@ -0,0 +1,96 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rewrites any temporal edge file sorted by timestamp, then source and
+ * target, with the snapshot index of {@link SnapshotIndexedWriter}.
+ *
+ * The sort runs on disk within the memory budget: the edges are handed to
+ * an {@link ExternalEdgeSorter} with the timestamp rotated into the first
+ * column, and rotated back on the way out. Duplicate edges are dropped.
+ *
+ */
+public class SnapshotPartitioner {
+
+	private long memoryBudget = ExternalEdgeSorter.DEFAULT_MEMORY_BUDGET;
+
+	private File scratchDirectory;
+
+	final private Logger logger = LoggerFactory.getLogger(SnapshotPartitioner.class);
+
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * @param scratchDirectory where sorted runs go, or null for the default temporary directory
+	 */
+	public void setScratchDirectory(File scratchDirectory) {
+		this.scratchDirectory = scratchDirectory;
+	}
+
+	/**
+	 * @param path a 3- or 4-column temporal edge file, text or binary
+	 * @param outputPath the binary output; the index goes to "outputPath.snapshots"
+	 * @return the number of edges written
+	 */
+	public long partition(String path, String outputPath) throws IOException {
+
+		this.logger.info("+partition({})", path);
+
+		long numEdges = 0;
+
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+
+			if (!reader.next()) {
+				new SnapshotIndexedWriter(outputPath, 3).close();
+				this.logger.info("-partition({})", path);
+				return 0;
+			}
+
+			final int columns = reader.getColumns();
+
+			try (ExternalEdgeSorter sorter = new ExternalEdgeSorter(columns, this.memoryBudget, this.scratchDirectory)) {
+
+				do {
+					if (columns == 3) {
+						sorter.write(reader.getStartTime(), reader.getSource(), reader.getTarget());
+					} else {
+						sorter.write(reader.getStartTime(), reader.getSource(), reader.getTarget(), reader.getEndTime());
+					}
+				} while (reader.next());
+
+				try (final SnapshotIndexedWriter writer = new SnapshotIndexedWriter(outputPath, columns)) {
+
+					numEdges = sorter.writeTo(new TemporalEdgeWriter() {
+
+						@Override
+						public void write(int timestamp, int source, int target) throws IOException {
+							writer.write(source, target, timestamp);
+						}
+
+						@Override
+						public void write(int startTime, int source, int target, int endTime) throws IOException {
+							writer.write(source, target, startTime, endTime);
+						}
+
+						@Override
+						public void close() {
+						}
+					});
+				}
+			}
+		}
+
+		this.logger.info("Number of edges is {}.", numEdges);
+		this.logger.info("-partition({})", path);
+
+		return numEdges;
+	}
+
+}
@@ -0,0 +1,119 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one stage of a run: records, bytes read and written, elapsed
+ * time, GC time and the largest heap use sampled while it was active, see
+ * {@link RunMetrics} for how often.
+ * 
+ * Counters may be updated from several threads. Hot loops should add their
+ * records in batches rather than one at a time.
+ *
+ */
+public class StageMetrics {
+	
+	private final String name;
+	
+	private final LongAdder records = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder bytesWritten = new LongAdder();
+	
+	private final long startNanos;
+	private volatile long endNanos = -1;
+	
+	private final long startGcMillis;
+	private volatile long gcMillis = -1;
+	
+	private final AtomicLong peakHeap = new AtomicLong();
+	
+	/**
+	 * Creates a started stage that is not part of any {@link RunMetrics}.
+	 */
+	public StageMetrics(String name) {
+		this.name = name;
+		this.startNanos = System.nanoTime();
+		this.startGcMillis = RunMetrics.getGcMillis();
+		this.sampleHeap();
+	}
+	
+	public String getName() {
+		return this.name;
+	}
+	
+	public void addRecords(long count) {
+		this.records.add(count);
+	}
+	
+	public void addBytesRead(long count) {
+		this.bytesRead.add(count);
+	}
+	
+	public void addBytesWritten(long count) {
+		this.bytesWritten.add(count);
+	}
+	
+	public void finish() {
+		
+		if (this.endNanos >= 0) {
+			return;
+		}
+		
+		this.sampleHeap();
+		this.gcMillis = RunMetrics.getGcMillis() - this.startGcMillis;
+		this.endNanos = System.nanoTime();
+	}
+	
+	public boolean isFinished() {
+		return this.endNanos >= 0;
+	}
+	
+	/**
+	 * Records the current heap use if it is the largest seen so far.
+	 */
+	void sampleHeap() {
+		this.sampleHeap(RunMetrics.getUsedHeap());
+	}
+	
+	void sampleHeap(long used) {
+		this.peakHeap.accumulateAndGet(used, Math::max);
+	}
+	
+	public long getRecords() {
+		return this.records.sum();
+	}
+	
+	public long getBytesRead() {
+		return this.bytesRead.sum();
+	}
+	
+	public long getBytesWritten() {
+		return this.bytesWritten.sum();
+	}
+	
+	/**
+	 * @return the seconds from start to finish, or until now if the stage is running
+	 */
+	public double getElapsedSeconds() {
+		long end = this.endNanos >= 0 ? this.endNanos : System.nanoTime();
+		return (end - this.startNanos) / 1e9;
+	}
+	
+	public double getRecordsPerSecond() {
+		double seconds = this.getElapsedSeconds();
+		return seconds > 0 ? this.getRecords() / seconds : 0;
+	}
+	
+	/**
+	 * @return the GC time of the whole JVM while the stage ran, including that caused by concurrent stages
+	 */
+	public long getGcMillis() {
+		return this.gcMillis >= 0 ? this.gcMillis : RunMetrics.getGcMillis() - this.startGcMillis;
+	}
+	
+	public long getPeakHeap() {
+		return this.peakHeap.get();
+	}
+
+}
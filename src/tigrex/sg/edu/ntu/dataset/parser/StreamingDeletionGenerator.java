@@ -0,0 +1,132 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Assigns end times to a temporal edge file sorted by source and writes each
+ * edge as soon as it is read, without building the condensed graph, so it
+ * runs in constant memory whatever the size of the graph.
+ * 
+ * Generators are split from the seed per block of source vertices exactly as
+ * in {@link PreprocessorForInsertedDeletions}, so for an input sorted by
+ * (source, target) both produce the same end times.
+ * 
+ * The input must not repeat a (source, target) pair. Unlike the condensed
+ * graph, the stream only sees one edge at a time, so it only rejects a pair
+ * that repeats the edge right before it; inputs with duplicates should go
+ * through {@link ExternalEdgeSorter} first.
+ *
+ */
+public class StreamingDeletionGenerator {
+	
+	private final DeletionModel model;
+	private final int seed;
+	
+	final private Logger logger = LoggerFactory.getLogger(StreamingDeletionGenerator.class);
+	
+	public StreamingDeletionGenerator(DeletionModel model, int seed) {
+		this.model = model;
+		this.seed = seed;
+	}
+	
+	/**
+	 * @param path a 3-column temporal edge file with normalized timestamps,
+	 *        sorted by source and without repeated (source, target) pairs
+	 * @param outputPath the ".deletions" output, binary if it ends with ".bin"
+	 * @return the number of edges written
+	 * @throws IOException if the input is not sorted by source or repeats the previous edge
+	 */
+	public long generate(String path, String outputPath) throws IOException {
+		
+		this.logger.info("+generate({})", path);
+		
+		int numSnapshots = this.countSnapshots(path);
+		
+		long numEdges;
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path);
+				TemporalEdgeWriter writer = TemporalEdgeWriter.open(outputPath, 4)) {
+			numEdges = this.generate(reader, numSnapshots, writer);
+		}
+		
+		this.logger.info("-generate({})", path);
+		
+		return numEdges;
+	}
+	
+	/**
+	 * @param reader 3-column edges with timestamps below numSnapshots, sorted by
+	 *        source and without repeated (source, target) pairs
+	 * @param writer receives the 4-column edges
+	 * @return the number of edges written
+	 * @throws IOException if the input is not sorted by source or repeats the previous edge
+	 */
+	public long generate(TemporalEdgeReader reader, int numSnapshots, TemporalEdgeWriter writer) throws IOException {
+		
+		SplittableRandom root = new SplittableRandom(this.seed);
+		SplittableRandom rand = null;
+		int block = -1;
+		
+		long numEdges = 0;
+		int previousSource = -1;
+		int previousTarget = -1;
+		
+		while (reader.next()) {
+			
+			int source = reader.getSource();
+			int target = reader.getTarget();
+			int startTime = reader.getStartTime();
+			
+			if (source < previousSource) {
+				throw new IOException("Input is not sorted by source at edge " + numEdges + ".");
+			}
+			
+			if (source == previousSource && target == previousTarget) {
+				throw new IOException("Duplicate edges found (" + source + ", " + target + ").");
+			}
+			
+			while (block < source / DeletionModel.VERTEX_BLOCK_SIZE) {
+				rand = root.split();
+				block++;
+			}
+			
+			writer.write(source, target, startTime, this.model.endTime(startTime, numSnapshots, rand));
+			
+			previousSource = source;
+			previousTarget = target;
+			numEdges++;
+			
+			if (numEdges % 1000000 == 0) {
+				this.logger.debug("Writing edge {}...", numEdges);
+			}
+		}
+		
+		this.logger.info("Number of edges is {}, snapshots {}.", numEdges, numSnapshots);
+		
+		return numEdges;
+	}
+	
+	/**
+	 * @return the snapshot count of a binary header, or one past the largest timestamp found by a scan
+	 */
+	private int countSnapshots(String path) throws IOException {
+		
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			
+			if (reader.getNumSnapshots() >= 0) {
+				return reader.getNumSnapshots();
+			}
+			
+			int maxTimestamp = -1;
+			while (reader.next()) {
+				maxTimestamp = Math.max(maxTimestamp, reader.getStartTime());
+			}
+			
+			return maxTimestamp + 1;
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cursor over the edges of a temporal edge file.
+ * 
+ * <pre>
+ * while (reader.next()) {
+ *     int source = reader.getSource();
+ *     ...
+ * }
+ * </pre>
+ *
+ */
+public interface TemporalEdgeReader extends Closeable {
+	
+	/**
+	 * Advances to the next edge.
+	 * 
+	 * @return false at the end of the file
+	 */
+	boolean next() throws IOException;
+	
+	int getSource();
+	
+	int getTarget();
+	
+	/**
+	 * @return the timestamp of a 3-column edge, or the start time of a 4-column edge
+	 */
+	int getStartTime();
+	
+	/**
+	 * @return the end time, or -1 for 3-column files
+	 */
+	int getEndTime();
+	
+	int getColumns();
+	
+	/**
+	 * @return the number of edges stored in the header, or -1 if the format has no header
+	 */
+	long getNumEdges();
+	
+	/**
+	 * @return one past the largest vertex id, or -1 if the format has no header
+	 */
+	int getNumVertices();
+	
+	/**
+	 * @return one past the largest timestamp, or -1 if the format has no header
+	 */
+	int getNumSnapshots();
+	
+	/**
+	 * Opens a binary or text reader depending on the magic number of the file.
+	 * Gzipped text is read block by block in parallel when it has a block
+	 * index, see {@link BlockGzipTemporalEdgeWriter}, and as one stream otherwise.
+	 */
+	static TemporalEdgeReader open(String path) throws IOException {
+		
+		int magic = 0;
+		try (DataInputStream in = new DataInputStream(new FileInputStream(path))) {
+			magic = in.readInt();
+		} catch (EOFException e) {
+			// Too short to be binary
+		}
+		
+		if (magic == BinaryTemporalEdgeWriter.MAGIC) {
+			return new BinaryTemporalEdgeReader(path);
+		}
+		
+		if (magic >>> 16 == 0x1f8b) {
+			
+			if (new File(path + BlockGzipTemporalEdgeWriter.INDEX_SUFFIX).exists()) {
+				return new BlockGzipTemporalEdgeReader(path);
+			}
+			
+			return new TextTemporalEdgeReader(new InputStreamReader(InputFiles.openGzip(path), StandardCharsets.UTF_8));
+		}
+		
+		return new TextTemporalEdgeReader(path);
+	}
+
+}
@@ -0,0 +1,47 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes temporal edges, either "source,target,timestamp" (3 columns) or
+ * "source,target,startTime,endTime" (4 columns).
+ *
+ */
+public interface TemporalEdgeWriter extends Closeable {
+	
+	/**
+	 * Paths ending with this suffix are written in the binary format.
+	 */
+	String BINARY_SUFFIX = ".bin";
+	
+	/**
+	 * Paths ending with this suffix are written as block-compressed text.
+	 */
+	String GZIP_SUFFIX = ".gz";
+	
+	void write(int source, int target, int timestamp) throws IOException;
+	
+	void write(int source, int target, int startTime, int endTime) throws IOException;
+	
+	/**
+	 * Opens a {@link BinaryTemporalEdgeWriter} if the path ends with ".bin",
+	 * a {@link BlockGzipTemporalEdgeWriter} if it ends with ".gz",
+	 * otherwise a {@link TextTemporalEdgeWriter}.
+	 * 
+	 * @param columns 3 for timestamped edges, 4 for edges with start and end times
+	 */
+	static TemporalEdgeWriter open(String path, int columns) throws IOException {
+		
+		if (path.endsWith(BINARY_SUFFIX)) {
+			return new BinaryTemporalEdgeWriter(path, columns);
+		}
+		
+		if (path.endsWith(GZIP_SUFFIX)) {
+			return new BlockGzipTemporalEdgeWriter(path, columns);
+		}
+		
+		return new TextTemporalEdgeWriter(path, columns);
+	}
+
+}
@@ -0,0 +1,476 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Read-only temporal graph answering time queries over a
+ * {@link CondensedGraph} with end times, e.g. loaded from the ".deletions"
+ * output of {@link PreprocessorForInsertedDeletions}.
+ *
+ * An edge with start time s and end time e is alive in snapshots s to e,
+ * as in {@link DeletionModel}. Every vertex gets an interval index over its
+ * outgoing edges: a copy of the row sorted by start time, laid out as an
+ * implicit interval tree in which the node at position i of level k (the
+ * lowest k bits of i set, bit k clear) also holds the largest end time of its
+ * subtree. A query walks down from the root and skips every subtree that
+ * ends before the query or starts after it, so it costs O(log degree + matches)
+ * instead of a scan of the row.
+ *
+ * The end times of every row are also kept sorted on their own. As no edge
+ * ends before it starts, the edges alive in [from, to] are those starting by
+ * to minus those ending before from, so degrees and edge counts take two
+ * binary searches per vertex. The same count tells when a query matches so
+ * much of the row that scanning the graph, already in target order, is
+ * cheaper than walking the tree.
+ *
+ * The index adds 20 bytes per edge, in the same storage as the graph.
+ *
+ * Queries do not modify the graph and may run concurrently.
+ *
+ */
+public class TemporalGraph implements Closeable {
+
+	/**
+	 * Receives the edges of {@link TemporalGraph#forEachEdge(int, int, EdgeVisitor)}.
+	 */
+	public interface EdgeVisitor {
+		void visit(int source, int target, int startTime, int endTime);
+	}
+
+	/**
+	 * Subtrees of at most this many levels are scanned instead of walked.
+	 */
+	private static final int SCAN_LEVEL = 3;
+
+	/**
+	 * Rows are scanned when more than 1 / SCAN_FRACTION of their edges match.
+	 */
+	private static final int SCAN_FRACTION = 8;
+
+	private final CondensedGraph graph;
+
+	// The rows sorted by start time, and the largest end time below every tree node
+	private final IntColumn targets;
+	private final IntColumn startTimes;
+	private final IntColumn endTimes;
+	private final IntColumn maxEndTimes;
+
+	// The end times of every row in ascending order
+	private final IntColumn sortedEndTimes;
+
+	/**
+	 * Loads a 4-column temporal edge file, text or binary, on the heap.
+	 */
+	public static TemporalGraph read(String path) throws IOException {
+		return read(path, IntColumn.Storage.HEAP, null);
+	}
+
+	/**
+	 * @param storage where to keep the edges and the index
+	 * @param scratchDirectory where MAPPED columns put their files, null for the default temporary directory
+	 */
+	public static TemporalGraph read(String path, IntColumn.Storage storage, File scratchDirectory) throws IOException {
+
+		CondensedGraph graph = CondensedGraph.read(path, storage, scratchDirectory);
+
+		try {
+			return new TemporalGraph(graph, storage, scratchDirectory);
+		} catch (IOException | RuntimeException e) {
+			graph.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Indexes the graph, which then belongs to this one and must not be modified.
+	 */
+	public TemporalGraph(CondensedGraph graph, IntColumn.Storage storage, File scratchDirectory) throws IOException {
+
+		this.graph = graph;
+
+		long numEdges = graph.getNumEdges();
+		this.targets = IntColumn.allocate(storage, numEdges, scratchDirectory);
+		this.startTimes = IntColumn.allocate(storage, numEdges, scratchDirectory);
+		this.endTimes = IntColumn.allocate(storage, numEdges, scratchDirectory);
+		this.maxEndTimes = IntColumn.allocate(storage, numEdges, scratchDirectory);
+		this.sortedEndTimes = IntColumn.allocate(storage, numEdges, scratchDirectory);
+
+		this.buildIndex();
+	}
+
+	private void buildIndex() {
+
+		int maxDegree = 0;
+		for (int v = 0; v < this.graph.getNumRows(); v++) {
+			maxDegree = (int) Math.max(maxDegree, this.graph.getEnd(v) - this.graph.getBegin(v));
+		}
+
+		long[] keys = new long[maxDegree];
+		int[] ends = new int[maxDegree];
+		int[] maxEnds = new int[maxDegree];
+
+		for (int v = 0; v < this.graph.getNumRows(); v++) {
+			long begin = this.graph.getBegin(v);
+			int degree = (int) (this.graph.getEnd(v) - begin);
+
+			// Sort (start time, position) keys; the positions keep ties in target order
+			for (int i = 0; i < degree; i++) {
+				keys[i] = ((long) this.graph.getStartTime(begin + i) << 32) | i;
+			}
+			Arrays.sort(keys, 0, degree);
+
+			for (int i = 0; i < degree; i++) {
+				long from = begin + (int) keys[i];
+				ends[i] = this.graph.getEndTime(from);
+
+				this.targets.set(begin + i, this.graph.getTarget(from));
+				this.startTimes.set(begin + i, this.graph.getStartTime(from));
+				this.endTimes.set(begin + i, ends[i]);
+			}
+
+			buildTree(ends, maxEnds, degree);
+
+			for (int i = 0; i < degree; i++) {
+				this.maxEndTimes.set(begin + i, maxEnds[i]);
+			}
+
+			Arrays.sort(ends, 0, degree);
+
+			for (int i = 0; i < degree; i++) {
+				this.sortedEndTimes.set(begin + i, ends[i]);
+			}
+		}
+	}
+
+	/**
+	 * Fills maxEnds bottom-up. Nodes whose right subtree lies past the end of
+	 * the row take the largest end time of the last complete subtree instead.
+	 */
+	static void buildTree(int[] ends, int[] maxEnds, int n) {
+
+		if (n == 0) {
+			return;
+		}
+
+		int lastIndex = 0;
+		int last = 0;
+
+		for (int i = 0; i < n; i += 2) {
+			lastIndex = i;
+			last = maxEnds[i] = ends[i];
+		}
+
+		for (int k = 1; 1L << k <= n; k++) {
+
+			long half = 1L << (k - 1);
+
+			for (long i = (half << 1) - 1; i < n; i += half << 2) {
+				int left = maxEnds[(int) (i - half)];
+				int right = i + half < n ? maxEnds[(int) (i + half)] : last;
+				maxEnds[(int) i] = Math.max(ends[(int) i], Math.max(left, right));
+			}
+
+			lastIndex = (lastIndex >>> k & 1) != 0 ? (int) (lastIndex - half) : (int) (lastIndex + half);
+			if (lastIndex < n && maxEnds[lastIndex] > last) {
+				last = maxEnds[lastIndex];
+			}
+		}
+	}
+
+	/**
+	 * Collects the positions within the row of the vertex of the edges alive at
+	 * some time in [from, to], in start time order.
+	 */
+	private void overlap(int vertex, int from, int to, Positions matches) {
+
+		long begin = this.graph.getBegin(vertex);
+		int n = (int) (this.graph.getEnd(vertex) - begin);
+
+		if (n == 0 || from > to) {
+			return;
+		}
+
+		// Nodes to visit, with their level and whether their left subtree is done
+		int[] nodes = new int[64];
+		int[] levels = new int[64];
+		boolean[] leftDone = new boolean[64];
+		int top = 0;
+
+		int rootLevel = 31 - Integer.numberOfLeadingZeros(n);
+		nodes[top] = (1 << rootLevel) - 1;
+		levels[top] = rootLevel;
+		leftDone[top++] = false;
+
+		while (top > 0) {
+
+			top--;
+			int node = nodes[top];
+			int level = levels[top];
+
+			if (level <= SCAN_LEVEL) {
+
+				int first = node >>> level << level;
+				int last = (int) Math.min(n, first + (1L << (level + 1)) - 1);
+
+				for (int i = first; i < last && this.startTimes.get(begin + i) <= to; i++) {
+					if (this.endTimes.get(begin + i) >= from) {
+						matches.add(i);
+					}
+				}
+
+			} else if (!leftDone[top]) {
+
+				int left = node - (1 << (level - 1));
+
+				leftDone[top++] = true;
+
+				// Past the end of the row, the left child still has nodes below it
+				if (left >= n || this.maxEndTimes.get(begin + left) >= from) {
+					nodes[top] = left;
+					levels[top] = level - 1;
+					leftDone[top++] = false;
+				}
+
+			} else if (node < n && this.startTimes.get(begin + node) <= to) {
+
+				if (this.endTimes.get(begin + node) >= from) {
+					matches.add(node);
+				}
+
+				nodes[top] = node + (1 << (level - 1));
+				levels[top] = level - 1;
+				leftDone[top++] = false;
+			}
+		}
+	}
+
+	/**
+	 * Growable list of row positions.
+	 */
+	private static class Positions {
+
+		int[] values;
+		int size;
+
+		Positions(int capacity) {
+			this.values = new int[Math.max(capacity, 16)];
+		}
+
+		void add(int position) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			this.values[this.size++] = position;
+		}
+	}
+
+	/**
+	 * @return the targets of the edges of the vertex alive at the timestamp, in ascending order
+	 */
+	public int[] getNeighbors(int vertex, int timestamp) {
+		return this.getNeighbors(vertex, timestamp, timestamp);
+	}
+
+	/**
+	 * @return the targets of the edges of the vertex alive at some time in [from, to], in ascending order
+	 */
+	public int[] getNeighbors(int vertex, int from, int to) {
+
+		if (vertex < 0 || vertex >= this.graph.getNumRows()) {
+			return new int[0];
+		}
+
+		long begin = this.graph.getBegin(vertex);
+		long end = this.graph.getEnd(vertex);
+
+		int count = (int) this.count(begin, end, from, to);
+
+		if (count > (end - begin) / SCAN_FRACTION) {
+			return this.scanNeighbors(begin, end, from, to, count);
+		}
+
+		Positions matches = new Positions(count);
+		this.overlap(vertex, from, to, matches);
+
+		int[] neighbors = new int[matches.size];
+		for (int i = 0; i < matches.size; i++) {
+			neighbors[i] = this.targets.get(begin + matches.values[i]);
+		}
+		Arrays.sort(neighbors);
+
+		return neighbors;
+	}
+
+	/**
+	 * @return the number of edges of the row alive at some time in [from, to]
+	 */
+	private long count(long begin, long end, int from, int to) {
+
+		if (from > to) {
+			return 0;
+		}
+
+		long endedBefore = from == Integer.MIN_VALUE ? 0 : countAtMost(this.sortedEndTimes, begin, end, from - 1);
+
+		return countAtMost(this.startTimes, begin, end, to) - endedBefore;
+	}
+
+	/**
+	 * @return the number of values of the sorted range at most the given one
+	 */
+	private static long countAtMost(IntColumn column, long begin, long end, int value) {
+
+		long low = begin;
+		long high = end;
+
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+
+			if (column.get(middle) <= value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low - begin;
+	}
+
+	private int[] scanNeighbors(long begin, long end, int from, int to, int count) {
+
+		int[] neighbors = new int[count];
+		int n = 0;
+
+		for (long e = begin; n < count; e++) {
+			if (this.graph.getStartTime(e) <= to && this.graph.getEndTime(e) >= from) {
+				neighbors[n++] = this.graph.getTarget(e);
+			}
+		}
+
+		return neighbors;
+	}
+
+	/**
+	 * @return the number of edges of the vertex alive at the timestamp
+	 */
+	public int getDegree(int vertex, int timestamp) {
+
+		if (vertex < 0 || vertex >= this.graph.getNumRows()) {
+			return 0;
+		}
+
+		return (int) this.count(this.graph.getBegin(vertex), this.graph.getEnd(vertex), timestamp, timestamp);
+	}
+
+	/**
+	 * Looks the edge up by binary search over the row sorted by target.
+	 */
+	public boolean isAlive(int source, int target, int timestamp) {
+
+		if (source < 0 || source >= this.graph.getNumRows()) {
+			return false;
+		}
+
+		long low = this.graph.getBegin(source);
+		long high = this.graph.getEnd(source) - 1;
+
+		while (low <= high) {
+			long middle = (low + high) >>> 1;
+			int value = this.graph.getTarget(middle);
+
+			if (value < target) {
+				low = middle + 1;
+			} else if (value > target) {
+				high = middle - 1;
+			} else {
+				return this.graph.getStartTime(middle) <= timestamp && timestamp <= this.graph.getEndTime(middle);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Visits the edges alive at some time in [from, to], by source and then start time.
+	 *
+	 * @return the number of edges visited
+	 */
+	public long forEachEdge(int from, int to, EdgeVisitor visitor) {
+
+		Positions matches = new Positions(16);
+		long numEdges = 0;
+
+		for (int v = 0; v < this.graph.getNumRows(); v++) {
+
+			matches.size = 0;
+			this.overlap(v, from, to, matches);
+
+			long begin = this.graph.getBegin(v);
+			for (int i = 0; i < matches.size; i++) {
+				long e = begin + matches.values[i];
+				visitor.visit(v, this.targets.get(e), this.startTimes.get(e), this.endTimes.get(e));
+			}
+
+			numEdges += matches.size;
+		}
+
+		return numEdges;
+	}
+
+	/**
+	 * @return the number of edges alive at some time in [from, to]
+	 */
+	public long getNumEdges(int from, int to) {
+
+		long numEdges = 0;
+		for (int v = 0; v < this.graph.getNumRows(); v++) {
+			numEdges += this.count(this.graph.getBegin(v), this.graph.getEnd(v), from, to);
+		}
+
+		return numEdges;
+	}
+
+	/**
+	 * @return at index d, the number of vertices with d edges alive at the
+	 *         timestamp; vertices of the graph without any count as degree 0
+	 */
+	public long[] getDegreeDistribution(int timestamp) {
+
+		long[] distribution = new long[16];
+		int maxDegree = 0;
+
+		for (int v = 0; v < this.graph.getNumRows(); v++) {
+
+			int degree = this.getDegree(v, timestamp);
+
+			if (degree >= distribution.length) {
+				distribution = Arrays.copyOf(distribution, Math.max(degree + 1, distribution.length * 2));
+			}
+			distribution[degree]++;
+			maxDegree = Math.max(maxDegree, degree);
+		}
+
+		// Rows of ids that never occur are not vertices
+		distribution[0] -= this.graph.getNumRows() - this.graph.getNumVertices();
+
+		return Arrays.copyOf(distribution, maxDegree + 1);
+	}
+
+	public CondensedGraph getGraph() {
+		return this.graph;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.graph.close();
+		this.targets.close();
+		this.startTimes.close();
+		this.endTimes.close();
+		this.maxEndTimes.close();
+		this.sortedEndTimes.close();
+	}
+
+}
@@ -0,0 +1,102 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads comma-separated edges with 3 or 4 columns, one per line.
+ *
+ */
+public class TextTemporalEdgeReader implements TemporalEdgeReader {
+	
+	private final BufferedReader reader;
+	
+	private int columns;
+	
+	private int source;
+	private int target;
+	private int startTime;
+	private int endTime;
+	
+	public TextTemporalEdgeReader(String path) throws IOException {
+		this.reader = new BufferedReader(new FileReader(path));
+	}
+	
+	public TextTemporalEdgeReader(Reader reader) {
+		this.reader = new BufferedReader(reader, 1 << 16);
+	}
+	
+	@Override
+	public boolean next() throws IOException {
+		
+		String line = this.reader.readLine();
+		if (line == null) {
+			return false;
+		}
+		
+		String[] parts = line.split(",");
+		
+		if (this.columns == 0) {
+			this.columns = parts.length;
+		}
+		
+		if (parts.length != this.columns || this.columns < 3 || this.columns > 4) {
+			throw new IOException("Malformed edge: " + line);
+		}
+		
+		this.source = Integer.parseInt(parts[0]);
+		this.target = Integer.parseInt(parts[1]);
+		this.startTime = Integer.parseInt(parts[2]);
+		this.endTime = this.columns == 4 ? Integer.parseInt(parts[3]) : -1;
+		
+		return true;
+	}
+	
+	@Override
+	public int getSource() {
+		return this.source;
+	}
+	
+	@Override
+	public int getTarget() {
+		return this.target;
+	}
+	
+	@Override
+	public int getStartTime() {
+		return this.startTime;
+	}
+	
+	@Override
+	public int getEndTime() {
+		return this.endTime;
+	}
+	
+	@Override
+	public int getColumns() {
+		return this.columns;
+	}
+	
+	@Override
+	public long getNumEdges() {
+		return -1;
+	}
+	
+	@Override
+	public int getNumVertices() {
+		return -1;
+	}
+	
+	@Override
+	public int getNumSnapshots() {
+		return -1;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		this.reader.close();
+	}
+
+}
@@ -0,0 +1,145 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes one comma-separated edge per line, the ".teg" and ".deletions" text format.
+ * 
+ * Ints are formatted straight into a byte buffer, so writing an edge does not allocate.
+ *
+ */
+public class TextTemporalEdgeWriter implements TemporalEdgeWriter {
+	
+	private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * Largest formatted edge: four signed 10-digit ints, three commas and a line separator.
+	 */
+	static final int MAX_LINE_SIZE = 4 * 11 + 3 + 2;
+	
+	private final FileOutputStream out;
+	private final int columns;
+	
+	private final byte[] buffer;
+	private int position;
+	
+	public TextTemporalEdgeWriter(String path, int columns) throws IOException {
+		this.out = new FileOutputStream(path);
+		this.columns = columns;
+		this.buffer = new byte[1 << 16];
+	}
+	
+	@Override
+	public void write(int source, int target, int timestamp) throws IOException {
+		
+		if (this.columns != 3) {
+			throw new IllegalStateException("Writer has " + this.columns + " columns.");
+		}
+		
+		if (this.position + MAX_LINE_SIZE > this.buffer.length) {
+			this.flush();
+		}
+		
+		this.position = format(this.buffer, this.position, source, target, timestamp);
+	}
+	
+	@Override
+	public void write(int source, int target, int startTime, int endTime) throws IOException {
+		
+		if (this.columns != 4) {
+			throw new IllegalStateException("Writer has " + this.columns + " columns.");
+		}
+		
+		if (this.position + MAX_LINE_SIZE > this.buffer.length) {
+			this.flush();
+		}
+		
+		this.position = format(this.buffer, this.position, source, target, startTime, endTime);
+	}
+	
+	/**
+	 * Formats a 3-column edge line into the buffer, which must have MAX_LINE_SIZE bytes left.
+	 * 
+	 * @return the position after the line
+	 */
+	static int format(byte[] buffer, int position, int source, int target, int timestamp) {
+		
+		position = formatInt(buffer, position, source);
+		buffer[position++] = ',';
+		position = formatInt(buffer, position, target);
+		buffer[position++] = ',';
+		position = formatInt(buffer, position, timestamp);
+		
+		return formatNewline(buffer, position);
+	}
+	
+	/**
+	 * Formats a 4-column edge line into the buffer, which must have MAX_LINE_SIZE bytes left.
+	 * 
+	 * @return the position after the line
+	 */
+	static int format(byte[] buffer, int position, int source, int target, int startTime, int endTime) {
+		
+		position = formatInt(buffer, position, source);
+		buffer[position++] = ',';
+		position = formatInt(buffer, position, target);
+		buffer[position++] = ',';
+		position = formatInt(buffer, position, startTime);
+		buffer[position++] = ',';
+		position = formatInt(buffer, position, endTime);
+		
+		return formatNewline(buffer, position);
+	}
+	
+	private static int formatInt(byte[] buffer, int position, int value) {
+		
+		if (value < 0) {
+			if (value == Integer.MIN_VALUE) {
+				byte[] digits = Integer.toString(value).getBytes(StandardCharsets.US_ASCII);
+				System.arraycopy(digits, 0, buffer, position, digits.length);
+				return position + digits.length;
+			}
+			buffer[position++] = '-';
+			value = -value;
+		}
+		
+		int length = 1;
+		for (int v = value; v >= 10; v /= 10) {
+			length++;
+		}
+		
+		for (int i = position + length - 1; i >= position; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		
+		return position + length;
+	}
+	
+	private static int formatNewline(byte[] buffer, int position) {
+		
+		for (byte b: NEWLINE) {
+			buffer[position++] = b;
+		}
+		
+		return position;
+	}
+	
+	private void flush() throws IOException {
+		this.out.write(this.buffer, 0, this.position);
+		this.position = 0;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		
+		try {
+			this.flush();
+		} finally {
+			this.out.close();
+		}
+	}
+
+}
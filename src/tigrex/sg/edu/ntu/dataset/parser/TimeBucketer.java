@@ -0,0 +1,106 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collapses the raw timestamps of a temporal edge file into coarser
+ * snapshots with a {@link TimeBucketing}, dropping the edges that become
+ * duplicates within a bucket.
+ *
+ * The bucketed edges are streamed through an {@link ExternalEdgeSorter}, so
+ * the dedup is exact whatever the order of the input and stays within the
+ * memory budget. The output is sorted by source, target and bucket.
+ *
+ */
+public class TimeBucketer {
+
+	private final TimeBucketing bucketing;
+
+	private long memoryBudget = ExternalEdgeSorter.DEFAULT_MEMORY_BUDGET;
+
+	private File scratchDirectory;
+
+	final private Logger logger = LoggerFactory.getLogger(TimeBucketer.class);
+
+	public TimeBucketer(TimeBucketing bucketing) {
+		this.bucketing = bucketing;
+	}
+
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * @param scratchDirectory where sorted runs go, or null for the default temporary directory
+	 */
+	public void setScratchDirectory(File scratchDirectory) {
+		this.scratchDirectory = scratchDirectory;
+	}
+
+	/**
+	 * @param path a 3- or 4-column temporal edge file with raw timestamps, text or binary
+	 * @param outputPath the bucketed output, binary if it ends with ".bin"
+	 * @return the number of edges written
+	 */
+	public long bucket(String path, String outputPath) throws IOException {
+
+		int columns;
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+			// Text files only know their number of columns once a line has been read
+			reader.next();
+			columns = reader.getColumns() > 0 ? reader.getColumns() : 3;
+		}
+
+		try (TemporalEdgeWriter writer = TemporalEdgeWriter.open(outputPath, columns)) {
+			return this.bucket(path, writer);
+		}
+	}
+
+	/**
+	 * Writes the bucketed edges to the given writer, with the columns of the input.
+	 */
+	public long bucket(String path, TemporalEdgeWriter writer) throws IOException {
+
+		this.logger.info("+bucket({})", path);
+
+		TimeBucketing fitted = this.bucketing.fit(path);
+
+		long numRead = 0;
+		long numWritten;
+
+		try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+
+			if (!reader.next()) {
+				this.logger.info("-bucket({})", path);
+				return 0;
+			}
+
+			int columns = reader.getColumns();
+
+			try (ExternalEdgeSorter sorter = new ExternalEdgeSorter(columns, this.memoryBudget, this.scratchDirectory)) {
+
+				do {
+					if (columns == 3) {
+						sorter.write(reader.getSource(), reader.getTarget(), fitted.bucket(reader.getStartTime()));
+					} else {
+						sorter.write(reader.getSource(), reader.getTarget(),
+								fitted.bucket(reader.getStartTime()), fitted.bucket(reader.getEndTime()));
+					}
+					numRead++;
+				} while (reader.next());
+
+				numWritten = sorter.writeTo(writer);
+			}
+		}
+
+		this.logger.info("Number of edges is {}, {} after bucketing.", numRead, numWritten);
+		this.logger.info("-bucket({})", path);
+
+		return numWritten;
+	}
+
+}
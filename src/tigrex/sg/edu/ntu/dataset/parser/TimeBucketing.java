@@ -0,0 +1,135 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Maps raw timestamps to coarser snapshots.
+ *
+ * The calendar bucketings expect YYYYMMDD timestamps, as written by
+ * {@link GrowthFileConverter}, and label every bucket with a timestamp of
+ * the same kind: the day itself, the Monday of its week, YYYYMM for months
+ * and YYYY for years. Labels keep the order of the raw timestamps.
+ *
+ */
+public interface TimeBucketing {
+
+	/**
+	 * @return the label of the bucket of the raw timestamp
+	 */
+	int bucket(int time);
+
+	/**
+	 * Bucketings that depend on the data compute their buckets from the
+	 * timestamps of the file here; the others return themselves.
+	 */
+	default TimeBucketing fit(String path) throws IOException {
+		return this;
+	}
+
+	static TimeBucketing day() {
+		return time -> time;
+	}
+
+	static TimeBucketing week() {
+		return time -> {
+			LocalDate monday = toDate(time).with(DayOfWeek.MONDAY);
+			return monday.getYear() * 10000 + monday.getMonthValue() * 100 + monday.getDayOfMonth();
+		};
+	}
+
+	static TimeBucketing month() {
+		return time -> time / 100;
+	}
+
+	static TimeBucketing year() {
+		return time -> time / 10000;
+	}
+
+	/**
+	 * Windows of consecutive timestamps holding about the same number of
+	 * edges, labeled with their first raw timestamp. All edges of one raw
+	 * timestamp stay in the same window, so a heavy timestamp can leave
+	 * fewer than numWindows windows. Works on any kind of timestamp.
+	 */
+	static TimeBucketing equalCount(final int numWindows) {
+
+		if (numWindows < 1) {
+			throw new IllegalArgumentException("Number of windows is " + numWindows + ", expected > 0.");
+		}
+
+		return new TimeBucketing() {
+
+			@Override
+			public int bucket(int time) {
+				throw new IllegalStateException("Equal-count windows are only known once fitted to a file.");
+			}
+
+			@Override
+			public TimeBucketing fit(String path) throws IOException {
+
+				IntHashSet timestampSet = new IntHashSet();
+				IntIntHashMap counts = new IntIntHashMap();
+				long numEdges = 0;
+
+				try (TemporalEdgeReader reader = TemporalEdgeReader.open(path)) {
+					while (reader.next()) {
+						int time = reader.getStartTime();
+						timestampSet.add(time);
+						counts.put(time, counts.get(time, 0) + 1);
+						numEdges++;
+					}
+				}
+
+				int[] timestamps = timestampSet.toArray();
+				Arrays.sort(timestamps);
+
+				int[] starts = new int[Math.min(numWindows, Math.max(1, timestamps.length))];
+				int numStarts = 0;
+				long seen = 0;
+
+				for (int time: timestamps) {
+					// A window starts whenever the edges seen so far reach its share
+					if (numStarts == 0 || seen * numWindows >= numStarts * numEdges) {
+						starts[numStarts++] = time;
+					}
+					seen += counts.get(time, 0);
+				}
+
+				return windows(Arrays.copyOf(starts, numStarts));
+			}
+		};
+	}
+
+	/**
+	 * Windows starting at the given raw timestamps; earlier timestamps fall into the first window.
+	 *
+	 * @param starts the first timestamp of every window, in ascending order
+	 */
+	static TimeBucketing windows(final int[] starts) {
+
+		return time -> {
+			int i = Arrays.binarySearch(starts, time);
+			if (i < 0) {
+				i = Math.max(0, -i - 2);
+			}
+			return starts.length == 0 ? time : starts[i];
+		};
+	}
+
+	/**
+	 * @param time a YYYYMMDD timestamp
+	 */
+	static LocalDate toDate(int time) {
+
+		try {
+			return LocalDate.of(time / 10000, time / 100 % 100, time % 100);
+		} catch (DateTimeException e) {
+			throw new IllegalArgumentException("Timestamp " + time + " is not a YYYYMMDD date.", e);
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package tigrex.sg.edu.ntu.dataset.parser;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps vertex names to dense int ids, in order of first appearance.
+ * 
+ * Each name is stored once; everything else refers to vertices by id.
+ *
+ */
+public class VertexDictionary {
+	
+	private final Map<String, Integer> ids;
+	private final List<String> names;
+	
+	public VertexDictionary() {
+		this.ids = new HashMap<String, Integer>();
+		this.names = new ArrayList<String>();
+	}
+	
+	/**
+	 * @return the id of the name, assigning the next free id to a new name
+	 */
+	public int getOrAdd(String name) {
+		
+		Integer id = this.ids.get(name);
+		
+		if (id == null) {
+			id = this.names.size();
+			this.ids.put(name, id);
+			this.names.add(name);
+		}
+		
+		return id;
+	}
+	
+	/**
+	 * @return the id of the name, or -1 if it has not been added
+	 */
+	public int get(String name) {
+		
+		Integer id = this.ids.get(name);
+		
+		return id == null ? -1 : id;
+	}
+	
+	public String getName(int id) {
+		return this.names.get(id);
+	}
+	
+	public int size() {
+		return this.names.size();
+	}
+	
+	/**
+	 * Writes "newId,name" lines for the vertices kept by a renumbering.
+	 * 
+	 * @param newIds the new id of every vertex, or -1 for vertices that are dropped
+	 */
+	public void writeToFile(String path, int[] newIds) throws IOException {
+		
+		int numKept = 0;
+		int[] oldIds = new int[newIds.length];
+		
+		for (int id = 0; id < newIds.length; id++) {
+			if (newIds[id] >= 0) {
+				oldIds[newIds[id]] = id;
+				numKept++;
+			}
+		}
+		
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(path), "utf-8"))) {
+			
+			for (int newId = 0; newId < numKept; newId++) {
+				writer.write(newId + "," + this.names.get(oldIds[newId]));
+				writer.newLine();
+			}
+			
+		}
+	}
+
+}